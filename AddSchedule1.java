@@ -1,8 +1,10 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Locale;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class AddSchedule1 extends JPanel {
 
@@ -17,40 +19,46 @@ public class AddSchedule1 extends JPanel {
         SUMMARY
     }
 
+    private static final String[] LEVEL_OPTIONS = {"HL", "SL"};
+    private static final String[] GRADE_OPTIONS = {"1", "2", "3", "4", "5", "6", "7"};
+    private static final String[] TEST_OPTIONS = {"No", "Yes"};
+    private static final String[] DIFFICULTY_OPTIONS = {"Very Easy", "Easy", "Average", "Hard", "Very Hard"};
+
     private final Allmenu allmenu;
     private Step currentStep = Step.CLASSES;
+    // Step cards are built the first time they are shown and then filled from the model state below.
+    private final EnumSet<Step> builtSteps = EnumSet.noneOf(Step.class);
 
     private final CardLayout cardLayout = new CardLayout();
     private final JPanel cardPanel = new JPanel(cardLayout);
     private final JLabel stepTitle = new JLabel("", SwingConstants.LEFT);
     private final JLabel stepSubtitle = new JLabel("", SwingConstants.LEFT);
 
-    private final JTextField[] classFields = new JTextField[6];
-    private final JComboBox<String>[] levelCombos = createComboArray(6);
-    private final JComboBox<String>[] currentGradeCombos = createComboArray(6);
-    private final JComboBox<String>[] targetGradeCombos = createComboArray(6);
-    private final JComboBox<String>[] testCombos = createComboArray(6);
-    private final JComboBox<String>[] difficultyCombos = createComboArray(6);
-    private final JTextField[] studyTimeFields = new JTextField[7];
+    private final JTextField[] classFields = new JTextField[ScheduleData.DEFAULT_CLASS_COUNT];
+    private final JComboBox<String>[] levelCombos = createComboArray(ScheduleData.DEFAULT_CLASS_COUNT);
+    private final JComboBox<String>[] currentGradeCombos = createComboArray(ScheduleData.DEFAULT_CLASS_COUNT);
+    private final JComboBox<String>[] targetGradeCombos = createComboArray(ScheduleData.DEFAULT_CLASS_COUNT);
+    private final JComboBox<String>[] testCombos = createComboArray(ScheduleData.DEFAULT_CLASS_COUNT);
+    private final JComboBox<String>[] difficultyCombos = createComboArray(ScheduleData.DEFAULT_CLASS_COUNT);
+    private final JTextField[] studyTimeFields = new JTextField[ScheduleData.DEFAULT_DAY_COUNT];
 
     private final JButton backButton = new JButton("Back");
     private final JButton nextButton = new JButton("Next");
     private final JButton cancelButton = new JButton("Cancel");
 
-    private final String[][] classValues = new String[6][6];
-    private final double[] minutesPerDay = new double[7];
+    // Sized to the loaded schedule so classes and days beyond the editable ones are carried through.
+    private ClassEntry[] classEntries = newClassEntries(ScheduleData.DEFAULT_CLASS_COUNT);
+    private double[] minutesPerDay = new double[ScheduleData.DEFAULT_DAY_COUNT];
+    private boolean studyTimesEntered;
 
-    private final DefaultTableModel summaryModel = new DefaultTableModel(ScheduleCalculator.COLUMN_NAMES, 0) {
-        @Override
-        public boolean isCellEditable(int row, int column) {
-            return false;
-        }
-    };
+    private final ScheduleTableModel summaryModel = new ScheduleTableModel();
 
     private final JLabel summaryHint = new JLabel("", SwingConstants.LEFT);
+    private final AsyncScheduleCalculator.Channel summaryUpdates;
 
     public AddSchedule1(Allmenu allmenu) {
         this.allmenu = allmenu;
+        this.summaryUpdates = allmenu.getAsyncCalculator().newChannel(this::showSummary, this::showSummaryFailure);
         setLayout(new BorderLayout(24, 24));
         setBorder(BorderFactory.createEmptyBorder(32, 48, 32, 48));
         setBackground(new Color(248, 249, 252));
@@ -74,43 +82,15 @@ public class AddSchedule1 extends JPanel {
         add(cardPanel, BorderLayout.CENTER);
         add(buildFooter(), BorderLayout.SOUTH);
 
-        cardPanel.add(buildClassPanel(), Step.CLASSES.name());
-        cardPanel.add(buildLevelPanel(), Step.LEVELS.name());
-        cardPanel.add(buildCurrentGradePanel(), Step.CURRENT_GRADES.name());
-        cardPanel.add(buildTargetGradePanel(), Step.TARGET_GRADES.name());
-        cardPanel.add(buildTestPanel(), Step.UPCOMING_TESTS.name());
-        cardPanel.add(buildDifficultyPanel(), Step.DIFFICULTY.name());
-        cardPanel.add(buildStudyTimePanel(), Step.STUDY_TIME.name());
-        cardPanel.add(buildSummaryPanel(), Step.SUMMARY.name());
-
         configureButtonActions();
         reset();
     }
 
     void reset() {
-        currentStep = Step.CLASSES;
-        for (int i = 0; i < classFields.length; i++) {
-            classFields[i].setText("");
-        }
-        for (String[] row : classValues) {
-            Arrays.fill(row, "");
-        }
-        Arrays.fill(minutesPerDay, 0.0);
-
-        populateComboBoxes(levelCombos, new String[]{"HL", "SL"}, 0);
-        String[] gradeOptions = {"1", "2", "3", "4", "5", "6", "7"};
-        populateComboBoxes(currentGradeCombos, gradeOptions, 3);
-        populateComboBoxes(targetGradeCombos, gradeOptions, 5);
-        populateComboBoxes(testCombos, new String[]{"No", "Yes"}, 0);
-        populateComboBoxes(difficultyCombos, new String[]{"Very Easy", "Easy", "Average", "Hard", "Very Hard"}, 2);
-
-        for (JTextField field : studyTimeFields) {
-            field.setText("");
-        }
-
-        summaryModel.setRowCount(0);
-        summaryHint.setText("");
-        updateStepUi();
+        classEntries = newClassEntries(ScheduleData.DEFAULT_CLASS_COUNT);
+        minutesPerDay = new double[ScheduleData.DEFAULT_DAY_COUNT];
+        studyTimesEntered = false;
+        restart();
     }
 
     void loadSchedule(ScheduleData schedule) {
@@ -119,47 +99,91 @@ public class AddSchedule1 extends JPanel {
             return;
         }
 
-        populateComboBoxes(levelCombos, new String[]{"HL", "SL"}, 0);
-        String[] gradeOptions = {"1", "2", "3", "4", "5", "6", "7"};
-        populateComboBoxes(currentGradeCombos, gradeOptions, 3);
-        populateComboBoxes(targetGradeCombos, gradeOptions, 5);
-        populateComboBoxes(testCombos, new String[]{"No", "Yes"}, 0);
-        populateComboBoxes(difficultyCombos, new String[]{"Very Easy", "Easy", "Average", "Hard", "Very Hard"}, 2);
-
-        for (String[] row : classValues) {
-            Arrays.fill(row, "");
+        classEntries = newClassEntries(Math.max(schedule.getClassCount(), classFields.length));
+        for (int i = 0; i < schedule.getClassCount(); i++) {
+            classEntries[i] = schedule.getClassEntry(i);
         }
-        Arrays.fill(minutesPerDay, 0.0);
-
-        String[][] storedValues = schedule.getClassValues();
-        for (int i = 0; i < classFields.length; i++) {
-            String[] storedRow = storedValues.length > i && storedValues[i] != null ? storedValues[i] : new String[6];
-            String className = storedRow.length > 0 && storedRow[0] != null ? storedRow[0] : "";
-            classFields[i].setText(className);
-            for (int j = 0; j < Math.min(storedRow.length, classValues[i].length); j++) {
-                classValues[i][j] = storedRow[j] == null ? "" : storedRow[j];
-            }
-            setComboSelection(levelCombos[i], classValues[i][1]);
-            setComboSelection(currentGradeCombos[i], classValues[i][2]);
-            setComboSelection(targetGradeCombos[i], classValues[i][3]);
-            setComboSelection(testCombos[i], classValues[i][4]);
-            setComboSelection(difficultyCombos[i], classValues[i][5]);
+        minutesPerDay = new double[Math.max(schedule.getDayCount(), studyTimeFields.length)];
+        for (int day = 0; day < schedule.getDayCount(); day++) {
+            minutesPerDay[day] = schedule.getMinutes(day);
         }
+        studyTimesEntered = true;
+        restart();
+    }
 
-        double[] storedMinutes = schedule.getMinutesPerDay();
-        for (int day = 0; day < studyTimeFields.length; day++) {
-            double minutes = storedMinutes.length > day ? storedMinutes[day] : 0.0;
-            minutesPerDay[day] = minutes;
-            double hours = minutes / 60.0;
-            studyTimeFields[day].setText(formatHoursForInput(hours));
+    private void restart() {
+        for (Step step : builtSteps) {
+            loadStepValues(step);
         }
-
-        summaryModel.setRowCount(0);
+        summaryUpdates.cancel();
+        summaryModel.setResult(null);
         summaryHint.setText("");
         currentStep = Step.CLASSES;
         updateStepUi();
     }
 
+    private void ensureStepBuilt(Step step) {
+        if (!builtSteps.add(step)) {
+            return;
+        }
+        cardPanel.add(buildStepPanel(step), step.name());
+        loadStepValues(step);
+    }
+
+    private JPanel buildStepPanel(Step step) {
+        switch (step) {
+            case CLASSES:
+                return buildClassPanel();
+            case LEVELS:
+                return buildLevelPanel();
+            case CURRENT_GRADES:
+                return buildCurrentGradePanel();
+            case TARGET_GRADES:
+                return buildTargetGradePanel();
+            case UPCOMING_TESTS:
+                return buildTestPanel();
+            case DIFFICULTY:
+                return buildDifficultyPanel();
+            case STUDY_TIME:
+                return buildStudyTimePanel();
+            case SUMMARY:
+            default:
+                return buildSummaryPanel();
+        }
+    }
+
+    private void loadStepValues(Step step) {
+        switch (step) {
+            case CLASSES:
+                for (int i = 0; i < classFields.length; i++) {
+                    classFields[i].setText(classEntries[i].getName());
+                }
+                break;
+            case LEVELS:
+                selectComboValues(levelCombos, 0, entry -> entry.getLevel().getLabel());
+                break;
+            case CURRENT_GRADES:
+                selectComboValues(currentGradeCombos, 3, entry -> ClassEntry.gradeLabel(entry.getCurrentGrade()));
+                break;
+            case TARGET_GRADES:
+                selectComboValues(targetGradeCombos, 5, entry -> ClassEntry.gradeLabel(entry.getTargetGrade()));
+                break;
+            case UPCOMING_TESTS:
+                selectComboValues(testCombos, 0, entry -> entry.isTestUpcoming() ? "Yes" : "No");
+                break;
+            case DIFFICULTY:
+                selectComboValues(difficultyCombos, 2, entry -> entry.getDifficulty().getLabel());
+                break;
+            case STUDY_TIME:
+                for (int day = 0; day < studyTimeFields.length; day++) {
+                    studyTimeFields[day].setText(studyTimesEntered ? formatHoursForInput(minutesPerDay[day] / 60.0) : "");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
     private JPanel buildFooter() {
         JPanel footer = new JPanel(new BorderLayout());
         footer.setOpaque(false);
@@ -198,54 +222,72 @@ public class AddSchedule1 extends JPanel {
         if (currentStep == Step.CLASSES) {
             return;
         }
+        ScheduleEvents.WizardStep event = new ScheduleEvents.WizardStep();
+        event.begin();
+        Step from = currentStep;
         currentStep = Step.values()[currentStep.ordinal() - 1];
         updateStepUi();
+        commitStep(event, "back", from, currentStep.name());
     }
 
     private void handleNext() {
+        ScheduleEvents.WizardStep event = new ScheduleEvents.WizardStep();
+        event.begin();
+        Step from = currentStep;
+        boolean finished = moveNext();
+        commitStep(event, "next", from, finished ? "finished" : currentStep.name());
+    }
+
+    private static void commitStep(ScheduleEvents.WizardStep event, String action, Step from, String to) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.action = action;
+            event.from = from.name();
+            event.to = to;
+            event.commit();
+        }
+    }
+
+    // Returns true when the wizard has finished and handed the schedule to the menu.
+    private boolean moveNext() {
         switch (currentStep) {
             case CLASSES:
                 if (!captureClassNames()) {
-                    return;
+                    return false;
                 }
                 break;
             case LEVELS:
-                captureComboValues(levelCombos, 1);
+                captureComboValues(levelCombos, (entry, value) -> entry.withLevel(ClassEntry.Level.parse(value)));
                 break;
             case CURRENT_GRADES:
-                captureComboValues(currentGradeCombos, 2);
+                captureComboValues(currentGradeCombos, (entry, value) -> entry.withCurrentGrade(ClassEntry.parseGradeStrict(value)));
                 break;
             case TARGET_GRADES:
-                captureComboValues(targetGradeCombos, 3);
+                captureComboValues(targetGradeCombos, (entry, value) -> entry.withTargetGrade(ClassEntry.parseGradeStrict(value)));
                 break;
             case UPCOMING_TESTS:
-                captureComboValues(testCombos, 4);
+                captureComboValues(testCombos, (entry, value) -> entry.withTestUpcoming("Yes".equals(value)));
                 break;
             case DIFFICULTY:
-                captureComboValues(difficultyCombos, 5);
+                captureComboValues(difficultyCombos, (entry, value) -> entry.withDifficulty(ClassEntry.Difficulty.parse(value)));
                 break;
             case STUDY_TIME:
                 if (!captureStudyTimes()) {
-                    return;
+                    return false;
                 }
                 populateSummary();
                 break;
             case SUMMARY:
-                populateSummary();
                 allmenu.saveSchedule(buildScheduleData());
                 allmenu.showScheduleView();
-                return;
+                return true;
             default:
                 break;
         }
 
-        if (currentStep != Step.SUMMARY) {
-            currentStep = Step.values()[currentStep.ordinal() + 1];
-            updateStepUi();
-        } else {
-            populateSummary();
-            updateStepUi();
-        }
+        currentStep = Step.values()[currentStep.ordinal() + 1];
+        updateStepUi();
+        return false;
     }
 
     private void handleCancel() {
@@ -271,15 +313,15 @@ public class AddSchedule1 extends JPanel {
                         JOptionPane.ERROR_MESSAGE);
                 return false;
             }
-            classValues[i][0] = value;
+            classEntries[i] = classEntries[i].withName(value);
         }
         return true;
     }
 
-    private void captureComboValues(JComboBox<String>[] comboBoxes, int column) {
+    private void captureComboValues(JComboBox<String>[] comboBoxes, BiFunction<ClassEntry, String, ClassEntry> capture) {
         for (int i = 0; i < comboBoxes.length; i++) {
             Object selected = comboBoxes[i].getSelectedItem();
-            classValues[i][column] = selected == null ? "" : selected.toString();
+            classEntries[i] = capture.apply(classEntries[i], selected == null ? "" : selected.toString());
         }
     }
 
@@ -361,17 +403,21 @@ public class AddSchedule1 extends JPanel {
     }
 
     private void populateSummary() {
-        ScheduleCalculator.ScheduleResult result = ScheduleCalculator.calculate(classValues, minutesPerDay);
-        summaryModel.setRowCount(0);
-        Object[][] rows = result.getTableData();
-        for (Object[] row : rows) {
-            summaryModel.addRow(row);
-        }
+        summaryHint.setText("Calculating your schedule...");
+        summaryUpdates.request(buildScheduleData());
+    }
+
+    private void showSummary(ScheduleCalculator.ScheduleResult result) {
+        summaryModel.setResult(result);
         summaryHint.setText(result.getSummaryText());
     }
 
+    private void showSummaryFailure(RuntimeException ex) {
+        summaryHint.setText("Could not calculate your schedule. Check your entries and try again.");
+    }
+
     private ScheduleData buildScheduleData() {
-        return new ScheduleData(classValues, minutesPerDay);
+        return new ScheduleData(classEntries, minutesPerDay);
     }
 
     private JPanel buildClassPanel() {
@@ -379,9 +425,9 @@ public class AddSchedule1 extends JPanel {
                 "What classes are you taking?",
                 "Enter each subject so we can ensure your schedule is accurate.");
 
-        JPanel grid = new JPanel(new GridLayout(6, 1, 10, 10));
+        JPanel grid = new JPanel(new GridLayout(classFields.length, 1, 10, 10));
         grid.setOpaque(false);
-        for (int i = 0; i < 6; i++) {
+        for (int i = 0; i < classFields.length; i++) {
             JPanel row = new JPanel(new BorderLayout(10, 0));
             row.setOpaque(false);
             JLabel label = new JLabel("Class " + (i + 1));
@@ -402,9 +448,8 @@ public class AddSchedule1 extends JPanel {
                 "Higher level or standard level?",
                 "Make sure to select correctly as it affects weighting.");
 
-        String[] options = {"HL", "SL"};
         for (int i = 0; i < levelCombos.length; i++) {
-            levelCombos[i] = createCombo(options);
+            levelCombos[i] = createCombo(LEVEL_OPTIONS);
         }
         panel.add(createComboGrid(levelCombos, "Class"), BorderLayout.CENTER);
         return panel;
@@ -415,9 +460,8 @@ public class AddSchedule1 extends JPanel {
                 "How are you doing right now?",
                 "Pick your current grade for each subject.");
 
-        String[] gradeOptions = {"1", "2", "3", "4", "5", "6", "7"};
         for (int i = 0; i < currentGradeCombos.length; i++) {
-            currentGradeCombos[i] = createCombo(gradeOptions);
+            currentGradeCombos[i] = createCombo(GRADE_OPTIONS);
         }
         panel.add(createComboGrid(currentGradeCombos, "Class"), BorderLayout.CENTER);
         return panel;
@@ -428,9 +472,8 @@ public class AddSchedule1 extends JPanel {
                 "What grade are you aiming for?",
                 "This helps us prioritize the right subjects.");
 
-        String[] gradeOptions = {"1", "2", "3", "4", "5", "6", "7"};
         for (int i = 0; i < targetGradeCombos.length; i++) {
-            targetGradeCombos[i] = createCombo(gradeOptions);
+            targetGradeCombos[i] = createCombo(GRADE_OPTIONS);
         }
         panel.add(createComboGrid(targetGradeCombos, "Class"), BorderLayout.CENTER);
         return panel;
@@ -441,9 +484,8 @@ public class AddSchedule1 extends JPanel {
                 "Upcoming assessments",
                 "Let us know if you have any upcoming assessments within the next 2 weeks.");
 
-        String[] options = {"No", "Yes"};
         for (int i = 0; i < testCombos.length; i++) {
-            testCombos[i] = createCombo(options);
+            testCombos[i] = createCombo(TEST_OPTIONS);
         }
         panel.add(createComboGrid(testCombos, "Class"), BorderLayout.CENTER);
         return panel;
@@ -454,9 +496,8 @@ public class AddSchedule1 extends JPanel {
                 "How tough does each class feel?",
                 "Classes with harder difficulty will be prioritized.");
 
-        String[] options = {"Very Easy", "Easy", "Average", "Hard", "Very Hard"};
         for (int i = 0; i < difficultyCombos.length; i++) {
-            difficultyCombos[i] = createCombo(options);
+            difficultyCombos[i] = createCombo(DIFFICULTY_OPTIONS);
         }
         panel.add(createComboGrid(difficultyCombos, "Class"), BorderLayout.CENTER);
         return panel;
@@ -467,7 +508,7 @@ public class AddSchedule1 extends JPanel {
                 "Study hours available",
                 "Roughly how many hours can you dedicate each day? Use decimals for partial hours.");
 
-        JPanel grid = new JPanel(new GridLayout(7, 1, 10, 10));
+        JPanel grid = new JPanel(new GridLayout(studyTimeFields.length, 1, 10, 10));
         grid.setOpaque(false);
         String[] days = getDayNames();
         for (int i = 0; i < days.length; i++) {
@@ -492,8 +533,7 @@ public class AddSchedule1 extends JPanel {
                 "Your weekly study blueprint",
                 "We split your study hours based on the priorities you set.");
 
-        JTable summaryTable = new JTable(summaryModel);
-        ScheduleTableUtil.configure(summaryTable);
+        JTable summaryTable = ScheduleTableUtil.createTable(summaryModel);
 
         JScrollPane scrollPane = new JScrollPane(summaryTable);
         scrollPane.setBorder(BorderFactory.createCompoundBorder(
@@ -576,6 +616,7 @@ public class AddSchedule1 extends JPanel {
     }
 
     private void updateStepUi() {
+        ensureStepBuilt(currentStep);
         stepTitle.setText(getStepTitle(currentStep));
         stepSubtitle.setText(getStepSubtitle(currentStep));
         cardLayout.show(cardPanel, currentStep.name());
@@ -630,23 +671,21 @@ public class AddSchedule1 extends JPanel {
         }
     }
 
+    private static ClassEntry[] newClassEntries(int size) {
+        ClassEntry[] entries = new ClassEntry[size];
+        Arrays.fill(entries, ClassEntry.EMPTY);
+        return entries;
+    }
+
     @SuppressWarnings("unchecked")
     private static JComboBox<String>[] createComboArray(int size) {
         return new JComboBox[size];
     }
 
-    private void populateComboBoxes(JComboBox<String>[] comboBoxes, String[] options, int defaultIndex) {
+    private void selectComboValues(JComboBox<String>[] comboBoxes, int defaultIndex, Function<ClassEntry, String> value) {
         for (int i = 0; i < comboBoxes.length; i++) {
-            if (comboBoxes[i] == null) {
-                comboBoxes[i] = createCombo(options);
-            } else {
-                comboBoxes[i].removeAllItems();
-                for (String option : options) {
-                    comboBoxes[i].addItem(option);
-                }
-            }
-            int index = Math.max(0, Math.min(defaultIndex, options.length - 1));
-            comboBoxes[i].setSelectedIndex(index);
+            comboBoxes[i].setSelectedIndex(Math.min(defaultIndex, comboBoxes[i].getItemCount() - 1));
+            setComboSelection(comboBoxes[i], value.apply(classEntries[i]));
         }
     }
 
@@ -0,0 +1,210 @@
+import javax.swing.SwingUtilities;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Calculates schedules on a background thread and hands the results to the Event Dispatch Thread.
+ * Each view asks through its own {@link Channel}; a new request on a channel supersedes the one
+ * before it, so a burst of edits costs at most one calculation in flight and only the latest result
+ * is ever published. A calculation that throws is counted and its exception is handed to the
+ * channel's failure handler on the same thread results are published on.
+ */
+public final class AsyncScheduleCalculator implements AutoCloseable {
+
+    private final ScheduleResultCache cache;
+    private final Executor publisher;
+    private final ExecutorService executor;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong edtNanos = new AtomicLong();
+    private final AtomicLong maxEdtNanos = new AtomicLong();
+
+    public AsyncScheduleCalculator(ScheduleResultCache cache) {
+        this(cache, SwingUtilities::invokeLater);
+    }
+
+    public AsyncScheduleCalculator(ScheduleResultCache cache, Executor publisher) {
+        this.cache = cache;
+        this.publisher = publisher;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "schedule-compute");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** A channel whose failures are reported on standard error. */
+    public Channel newChannel(Consumer<ScheduleCalculator.ScheduleResult> consumer) {
+        return new Channel(consumer, ex -> System.err.println("Could not calculate the schedule: " + ex));
+    }
+
+    public Channel newChannel(Consumer<ScheduleCalculator.ScheduleResult> consumer,
+                              Consumer<? super RuntimeException> failureHandler) {
+        return new Channel(consumer, failureHandler);
+    }
+
+    public long getRequestedCount() {
+        return requested.get();
+    }
+
+    public long getSupersededCount() {
+        return superseded.get();
+    }
+
+    public long getComputedCount() {
+        return computed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /** Mean time from a request to its result being shown, for published results only. */
+    public long getAverageLatencyNanos() {
+        long count = published.get();
+        return count == 0 ? 0 : latencyNanos.get() / count;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    /** Mean time the Event Dispatch Thread spent applying a published result. */
+    public long getAverageEdtNanos() {
+        long count = published.get();
+        return count == 0 ? 0 : edtNanos.get() / count;
+    }
+
+    public long getMaxEdtNanos() {
+        return maxEdtNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "requested=%d superseded=%d computed=%d failed=%d published=%d "
+                        + "latency avg=%.2fms max=%.2fms edt avg=%.2fms max=%.2fms",
+                getRequestedCount(), getSupersededCount(), getComputedCount(), getFailedCount(), getPublishedCount(),
+                getAverageLatencyNanos() / 1e6, getMaxLatencyNanos() / 1e6,
+                getAverageEdtNanos() / 1e6, getMaxEdtNanos() / 1e6);
+    }
+
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdownNow();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static void recordMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /** Latest-wins request stream for one view. */
+    public final class Channel {
+        private final Consumer<ScheduleCalculator.ScheduleResult> consumer;
+        private final Consumer<? super RuntimeException> failureHandler;
+        private final AtomicLong generation = new AtomicLong();
+        private Future<?> pending;
+
+        private Channel(Consumer<ScheduleCalculator.ScheduleResult> consumer,
+                        Consumer<? super RuntimeException> failureHandler) {
+            this.consumer = consumer;
+            this.failureHandler = failureHandler;
+        }
+
+        public void request(ScheduleData schedule) {
+            long ticket = generation.incrementAndGet();
+            long requestedAt = System.nanoTime();
+            requested.incrementAndGet();
+            synchronized (this) {
+                if (pending != null && pending.cancel(false)) {
+                    superseded.incrementAndGet();
+                }
+                pending = executor.submit(() -> compute(ticket, schedule, requestedAt));
+            }
+        }
+
+        /** Drops any request that has not been published yet. */
+        public void cancel() {
+            generation.incrementAndGet();
+            synchronized (this) {
+                if (pending != null && pending.cancel(false)) {
+                    superseded.incrementAndGet();
+                }
+                pending = null;
+            }
+        }
+
+        private boolean isStale(long ticket) {
+            if (generation.get() != ticket) {
+                superseded.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private void compute(long ticket, ScheduleData schedule, long requestedAt) {
+            if (isStale(ticket)) {
+                return;
+            }
+            ScheduleCalculator.ScheduleResult result;
+            try {
+                result = cache.get(schedule);
+            } catch (RuntimeException ex) {
+                // Submitted tasks keep their exceptions in a Future nobody reads, so hand it to the channel.
+                failed.incrementAndGet();
+                if (!isStale(ticket)) {
+                    publisher.execute(() -> fail(ticket, ex));
+                }
+                return;
+            }
+            computed.incrementAndGet();
+            if (isStale(ticket)) {
+                return;
+            }
+            publisher.execute(() -> publish(ticket, result, requestedAt));
+        }
+
+        private void publish(long ticket, ScheduleCalculator.ScheduleResult result, long requestedAt) {
+            if (isStale(ticket)) {
+                return;
+            }
+            long start = System.nanoTime();
+            consumer.accept(result);
+            long end = System.nanoTime();
+            published.incrementAndGet();
+            edtNanos.addAndGet(end - start);
+            recordMax(maxEdtNanos, end - start);
+            latencyNanos.addAndGet(end - requestedAt);
+            recordMax(maxLatencyNanos, end - requestedAt);
+        }
+
+        private void fail(long ticket, RuntimeException ex) {
+            if (!isStale(ticket)) {
+                failureHandler.accept(ex);
+            }
+        }
+    }
+}
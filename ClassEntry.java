@@ -0,0 +1,255 @@
+public final class ClassEntry {
+
+    public enum Level {
+        NONE(""),
+        SL("SL"),
+        HL("HL");
+
+        private final String label;
+
+        Level(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Level parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return NONE;
+            }
+            return "HL".equalsIgnoreCase(value) ? HL : SL;
+        }
+
+        public static Level parseStrict(String value) {
+            Level level = parse(value);
+            if (level == SL && !"SL".equalsIgnoreCase(value)) {
+                throw new IllegalArgumentException("Unknown level: " + value);
+            }
+            return level;
+        }
+    }
+
+    public enum Difficulty {
+        UNKNOWN(""),
+        VERY_EASY("Very Easy"),
+        EASY("Easy"),
+        AVERAGE("Average"),
+        HARD("Hard"),
+        VERY_HARD("Very Hard");
+
+        private static final Difficulty[] VALUES = values();
+
+        private final String label;
+
+        Difficulty(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Difficulty parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return UNKNOWN;
+            }
+            for (int i = 1; i < VALUES.length; i++) {
+                if (VALUES[i].label.equalsIgnoreCase(value)) {
+                    return VALUES[i];
+                }
+            }
+            return UNKNOWN;
+        }
+
+        public static Difficulty parseStrict(String value) {
+            Difficulty difficulty = parse(value);
+            if (difficulty == UNKNOWN && value != null && !value.isEmpty()) {
+                throw new IllegalArgumentException("Unknown difficulty: " + value);
+            }
+            return difficulty;
+        }
+    }
+
+    public static final byte NO_GRADE = 0;
+    public static final byte INVALID_GRADE = -1;
+    public static final byte MIN_GRADE = 1;
+    public static final byte MAX_GRADE = 7;
+
+    // Written by toRow for INVALID_GRADE; parse reads any other non-grade text back as invalid too.
+    static final String INVALID_GRADE_LABEL = "?";
+
+    public static final ClassEntry EMPTY = new ClassEntry("", Level.NONE, NO_GRADE, NO_GRADE, false, Difficulty.UNKNOWN);
+
+    private final String name;
+    private final Level level;
+    private final byte currentGrade;
+    private final byte targetGrade;
+    private final boolean testUpcoming;
+    private final Difficulty difficulty;
+
+    public ClassEntry(String name, Level level, int currentGrade, int targetGrade, boolean testUpcoming, Difficulty difficulty) {
+        this.name = name == null ? "" : name;
+        this.level = level == null ? Level.NONE : level;
+        this.currentGrade = checkGrade(currentGrade);
+        this.targetGrade = checkGrade(targetGrade);
+        this.testUpcoming = testUpcoming;
+        this.difficulty = difficulty == null ? Difficulty.UNKNOWN : difficulty;
+    }
+
+    public static ClassEntry parse(String[] row) {
+        return new ClassEntry(
+                getValue(row, 0),
+                Level.parse(getValue(row, 1)),
+                parseGrade(getValue(row, 2)),
+                parseGrade(getValue(row, 3)),
+                "Yes".equalsIgnoreCase(getValue(row, 4)),
+                Difficulty.parse(getValue(row, 5)));
+    }
+
+    public static ClassEntry parseStrict(String[] row) {
+        String test = getValue(row, 4);
+        if (!test.isEmpty() && !"Yes".equalsIgnoreCase(test) && !"No".equalsIgnoreCase(test)) {
+            throw new IllegalArgumentException("Upcoming test must be Yes or No: " + test);
+        }
+        return new ClassEntry(
+                getValue(row, 0),
+                Level.parseStrict(getValue(row, 1)),
+                parseGradeStrict(getValue(row, 2)),
+                parseGradeStrict(getValue(row, 3)),
+                "Yes".equalsIgnoreCase(test),
+                Difficulty.parseStrict(getValue(row, 5)));
+    }
+
+    public static byte parseGrade(String value) {
+        if (value == null || value.isEmpty()) {
+            return NO_GRADE;
+        }
+        if (value.length() == 1) {
+            char c = value.charAt(0);
+            if (c >= '0' + MIN_GRADE && c <= '0' + MAX_GRADE) {
+                return (byte) (c - '0');
+            }
+        }
+        return INVALID_GRADE;
+    }
+
+    public static byte parseGradeStrict(String value) {
+        byte grade = parseGrade(value);
+        if (grade == INVALID_GRADE) {
+            throw new IllegalArgumentException("Grade must be between " + MIN_GRADE + " and " + MAX_GRADE + ": " + value);
+        }
+        return grade;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public byte getCurrentGrade() {
+        return currentGrade;
+    }
+
+    public byte getTargetGrade() {
+        return targetGrade;
+    }
+
+    public boolean isTestUpcoming() {
+        return testUpcoming;
+    }
+
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public ClassEntry withName(String value) {
+        return new ClassEntry(value, level, currentGrade, targetGrade, testUpcoming, difficulty);
+    }
+
+    public ClassEntry withLevel(Level value) {
+        return new ClassEntry(name, value, currentGrade, targetGrade, testUpcoming, difficulty);
+    }
+
+    public ClassEntry withCurrentGrade(int value) {
+        return new ClassEntry(name, level, value, targetGrade, testUpcoming, difficulty);
+    }
+
+    public ClassEntry withTargetGrade(int value) {
+        return new ClassEntry(name, level, currentGrade, value, testUpcoming, difficulty);
+    }
+
+    public ClassEntry withTestUpcoming(boolean value) {
+        return new ClassEntry(name, level, currentGrade, targetGrade, value, difficulty);
+    }
+
+    public ClassEntry withDifficulty(Difficulty value) {
+        return new ClassEntry(name, level, currentGrade, targetGrade, testUpcoming, value);
+    }
+
+    public String[] toRow() {
+        return new String[]{
+                name,
+                level.getLabel(),
+                rowGradeLabel(currentGrade),
+                rowGradeLabel(targetGrade),
+                testUpcoming ? "Yes" : "No",
+                difficulty.getLabel()
+        };
+    }
+
+    public static String gradeLabel(byte grade) {
+        return grade >= MIN_GRADE ? Integer.toString(grade) : "";
+    }
+
+    // Unlike gradeLabel, keeps an invalid grade distinct from a missing one so parse(toRow()) is lossless.
+    private static String rowGradeLabel(byte grade) {
+        return grade == INVALID_GRADE ? INVALID_GRADE_LABEL : gradeLabel(grade);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ClassEntry)) {
+            return false;
+        }
+        ClassEntry entry = (ClassEntry) other;
+        return currentGrade == entry.currentGrade
+                && targetGrade == entry.targetGrade
+                && testUpcoming == entry.testUpcoming
+                && level == entry.level
+                && difficulty == entry.difficulty
+                && name.equals(entry.name);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + level.ordinal();
+        result = 31 * result + currentGrade;
+        result = 31 * result + targetGrade;
+        result = 31 * result + (testUpcoming ? 1 : 0);
+        result = 31 * result + difficulty.ordinal();
+        return result;
+    }
+
+    private static byte checkGrade(int grade) {
+        if (grade != INVALID_GRADE && (grade < NO_GRADE || grade > MAX_GRADE)) {
+            throw new IllegalArgumentException("Grade must be between " + MIN_GRADE + " and " + MAX_GRADE + ": " + grade);
+        }
+        return (byte) grade;
+    }
+
+    private static String getValue(String[] row, int index) {
+        if (row == null || index < 0 || index >= row.length || row[index] == null) {
+            return "";
+        }
+        return row[index];
+    }
+}
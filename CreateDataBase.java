@@ -1,32 +1,57 @@
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.ResultSet;
-import java.sql.*;
 import javax.swing.*;
 
 public class CreateDataBase {
+    static final String URL_PROPERTY = "schedule.db.url";
+    static final String USER_PROPERTY = "schedule.db.user";
+    static final String PASSWORD_PROPERTY = "schedule.db.password";
+    static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/Schedule6";
+
+    private static final String INSERT_QUERY =
+        "insert into ScheduleValue1(HigherLevel,StandardLevel,TestUpcoming,CurrentGrade,GradeWanted,IsHard,TimeToStudy,PriorityNum) "
+        + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final String url;
+    private final String user;
+    private final String password;
     private Connection con;
-    private Statement st;
-    private ResultSet rs;
+    private PreparedStatement insert;
     
     // constructor method
     
      public CreateDataBase()
      {
+        this(System.getProperty(URL_PROPERTY, DEFAULT_URL),
+            System.getProperty(USER_PROPERTY, "root"),
+            System.getProperty(PASSWORD_PROPERTY, ""));
+     }
+
+     public CreateDataBase(String url, String user, String password)
+     {
+        this.url = url;
+        this.user = user;
+        this.password = password;
     try{
-        
-        Class.forName("com.mysql.jdbc.Driver");
-        con=DriverManager.getConnection("jdbc:mysql://localhost:3306/Schedule6","root","");
-        st =con.createStatement();
-         }catch(ClassNotFoundException | SQLException ex)
+        con=DriverManager.getConnection(url,user,password);
+        insert=con.prepareStatement(INSERT_QUERY);
+         }catch(SQLException ex)
          {
             
             JOptionPane.showMessageDialog(null,"error:"+ex);
             
             }
   }
+
+  // Opens a schedule repository against the same database for whole-schedule and cohort saves.
+  public JdbcScheduleRepository openRepository() throws IOException
+  {
+    return JdbcScheduleRepository.open(url, user, password);
+  }
+
   // for is hard, very hard, hard, average, easy, very easy
   public void insertData( String HigherLevel,
 String StandardLevel ,
@@ -36,14 +61,35 @@ int GradeWanted ,
 int PriorityNum,
 String IsHard, double TimeToStudy )
 {
-    String query;
+ if (insert == null) {
+    return;
+ }
+ long start = ScheduleMetrics.start();
+ ScheduleEvents.Persistence event = ScheduleEvents.beginPersistence("jdbc-legacy");
+ long written = 0;
+ Exception failure = null;
  try{
-    query="insert into ScheduleValue1(HigherLevel,StandardLevel,TestUpcoming,CurrentGrade ,GradeWanted,IsHard,TimeToStudy,PriorityNum) value("+StandardLevel+",'"+StandardLevel+",'"+TestUpcoming+",'"+CurrentGrade+",'"+GradeWanted+",'"+IsHard+",'"+TimeToStudy+",'"+PriorityNum+")";
-    st.executeUpdate(query);
+    insert.setString(1, HigherLevel);
+    insert.setString(2, StandardLevel);
+    insert.setString(3, TestUpcoming);
+    insert.setInt(4, CurrentGrade);
+    insert.setInt(5, GradeWanted);
+    insert.setString(6, IsHard);
+    insert.setDouble(7, TimeToStudy);
+    insert.setInt(8, PriorityNum);
+    insert.executeUpdate();
+    ScheduleMetrics.DATABASE_ROWS.increment();
+    written = 1;
      } catch(SQLException ex)  
      {
+       failure = ex;
        JOptionPane.showMessageDialog(null,"error:"+ex); 
         }
+     finally
+     {
+       ScheduleEvents.commitPersistence(event, 1, written, 0, failure);
+        }
+ ScheduleMetrics.DATABASE_WRITE.stop(start);
 
 
 }
@@ -0,0 +1,95 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class DurationLabels {
+
+    public static final int MAX_CACHED_MINUTES = 24 * 60;
+
+    private static final DurationLabels ENGLISH = new DurationLabels("hour", "hours", "minute", "minutes");
+    private static final Map<Locale, DurationLabels> BY_LOCALE = new ConcurrentHashMap<>();
+    private static volatile DurationLabels current = ENGLISH;
+
+    private final String hourSingular;
+    private final String hourPlural;
+    private final String minuteSingular;
+    private final String minutePlural;
+    private final String[] labels = new String[MAX_CACHED_MINUTES + 1];
+
+    private DurationLabels(String hourSingular, String hourPlural, String minuteSingular, String minutePlural) {
+        this.hourSingular = hourSingular;
+        this.hourPlural = hourPlural;
+        this.minuteSingular = minuteSingular;
+        this.minutePlural = minutePlural;
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = build(i);
+        }
+    }
+
+    public static DurationLabels english() {
+        return ENGLISH;
+    }
+
+    public static DurationLabels withUnits(String hourSingular, String hourPlural, String minuteSingular, String minutePlural) {
+        return new DurationLabels(hourSingular, hourPlural, minuteSingular, minutePlural);
+    }
+
+    public static void register(Locale locale, DurationLabels labels) {
+        BY_LOCALE.put(locale, labels);
+    }
+
+    public static DurationLabels forLocale(Locale locale) {
+        DurationLabels labels = locale == null ? null : BY_LOCALE.get(locale);
+        if (labels == null && locale != null) {
+            labels = BY_LOCALE.get(new Locale(locale.getLanguage()));
+        }
+        return labels != null ? labels : ENGLISH;
+    }
+
+    public static DurationLabels current() {
+        return current;
+    }
+
+    public static void use(DurationLabels labels) {
+        current = labels != null ? labels : ENGLISH;
+    }
+
+    public static void useLocale(Locale locale) {
+        use(forLocale(locale));
+    }
+
+    public String label(double minutes) {
+        return label((int) Math.round(Math.max(0.0, minutes)));
+    }
+
+    public String label(int totalMinutes) {
+        if (totalMinutes >= 0 && totalMinutes <= MAX_CACHED_MINUTES) {
+            return labels[totalMinutes];
+        }
+        return build(Math.max(0, totalMinutes));
+    }
+
+    private String build(int totalMinutes) {
+        int hours = totalMinutes / 60;
+        int mins = totalMinutes % 60;
+
+        StringBuilder builder = new StringBuilder();
+        if (hours > 0) {
+            builder.append(hours)
+                    .append(" ")
+                    .append(hours == 1 ? hourSingular : hourPlural);
+        }
+        if (mins > 0) {
+            if (builder.length() > 0) {
+                builder.append(" ");
+            }
+            builder.append(mins)
+                    .append(" ")
+                    .append(mins == 1 ? minuteSingular : minutePlural);
+        }
+        if (builder.length() == 0) {
+            builder.append("0 ").append(minutePlural);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,97 @@
+import javax.swing.SwingUtilities;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how responsive the Event Dispatch Thread is by posting a probe at a fixed period and
+ * recording how long each probe waited before it ran. Enable it in the app with
+ * {@code -Dschedule.edt.monitor=true}; the summary is printed to standard error on exit.
+ */
+public final class EdtLatencyMonitor implements AutoCloseable {
+
+    static final String ENABLED_PROPERTY = "schedule.edt.monitor";
+
+    private final long slowThresholdNanos;
+    private final ScheduledExecutorService timer;
+    private final AtomicBoolean probePending = new AtomicBoolean();
+
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong slowSamples = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private EdtLatencyMonitor(long period, long slowThreshold, TimeUnit unit) {
+        this.slowThresholdNanos = unit.toNanos(slowThreshold);
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "edt-latency-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(this::probe, period, period, unit);
+    }
+
+    public static EdtLatencyMonitor start(long period, long slowThreshold, TimeUnit unit) {
+        if (period <= 0 || slowThreshold <= 0) {
+            throw new IllegalArgumentException("Period and threshold must be positive");
+        }
+        return new EdtLatencyMonitor(period, slowThreshold, unit);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    public long getSampleCount() {
+        return samples.get();
+    }
+
+    /** Probes that waited longer than the slow threshold. */
+    public long getSlowCount() {
+        return slowSamples.get();
+    }
+
+    public long getAverageNanos() {
+        long count = samples.get();
+        return count == 0 ? 0 : totalNanos.get() / count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "edt probes=%d slow=%d avg=%.2fms max=%.2fms",
+                getSampleCount(), getSlowCount(), getAverageNanos() / 1e6, getMaxNanos() / 1e6);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    // Only one probe is queued at a time so a stalled EDT is reported once, with its full delay.
+    private void probe() {
+        if (!probePending.compareAndSet(false, true)) {
+            return;
+        }
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            long waited = System.nanoTime() - posted;
+            probePending.set(false);
+            samples.incrementAndGet();
+            totalNanos.addAndGet(waited);
+            if (waited > slowThresholdNanos) {
+                slowSamples.incrementAndGet();
+            }
+            long current = maxNanos.get();
+            while (waited > current && !maxNanos.compareAndSet(current, waited)) {
+                current = maxNanos.get();
+            }
+        });
+    }
+}
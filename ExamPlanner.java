@@ -0,0 +1,304 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Multi-week schedule for a student with dated assessments. The horizon starts on the Monday of the
+ * current week and runs for a whole number of weeks. A class's priority on a day is its usual priority
+ * plus a test weight that ramps up over the {@link #RAMP_DAYS} days before each of its assessments, in
+ * place of the undated "upcoming test" flag.
+ *
+ * <p>Days before today are frozen: their minutes are kept as they were planned and never recomputed.
+ * Editing the schedule or the assessments recomputes only today and later, and moving to a new day
+ * recomputes nothing, because a day's plan depends only on its date and the inputs. When today moves
+ * into a later week the horizon slides forward by whole weeks, keeping the columns it already has and
+ * computing only the new days at the end. Open days are scored with the profile that was current when
+ * the schedule was last set, so a profile reload takes effect on the next {@link #setSchedule}.
+ */
+public final class ExamPlanner {
+
+    /** Days before an assessment over which its weight ramps up. */
+    public static final int RAMP_DAYS = 21;
+    /** Multiple of the undated test weight reached on the day of an assessment. */
+    public static final double RAMP_PEAK = 3.0;
+
+    private static final int DAYS_PER_WEEK = 7;
+
+    public static final class Assessment {
+        private final int classIndex;
+        private final LocalDate date;
+        private final String label;
+
+        public Assessment(int classIndex, LocalDate date, String label) {
+            if (classIndex < 0) {
+                throw new IllegalArgumentException("Class index cannot be negative: " + classIndex);
+            }
+            this.classIndex = classIndex;
+            this.date = Objects.requireNonNull(date, "date");
+            this.label = label != null ? label : "";
+        }
+
+        public int getClassIndex() {
+            return classIndex;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final int dayCount;
+    private final List<Assessment> assessments = new ArrayList<>();
+    private ScheduleData schedule;
+    private WeightProfile profile;
+    private ClassEntry[] classes;
+    private String[] classNames;
+    // Priority without any test weight for classes with dated assessments, and as usual for the rest.
+    private double[] basePriorities;
+    private LocalDate startDate;
+    private LocalDate today;
+    private double[][] dayMinutes;
+    private double[][] dayPriorities;
+    private ScheduleCalculator.ScheduleResult result;
+    private long computedDays;
+
+    public ExamPlanner(ScheduleData schedule, LocalDate today, int weeks) {
+        if (weeks < 1) {
+            throw new IllegalArgumentException("The horizon must be at least one week: " + weeks);
+        }
+        this.dayCount = weeks * DAYS_PER_WEEK;
+        this.today = Objects.requireNonNull(today, "today");
+        this.startDate = weekStart(today);
+        this.dayMinutes = new double[dayCount][];
+        this.dayPriorities = new double[dayCount][];
+        setSchedule(schedule);
+    }
+
+    /** Replaces the classes and weekly study minutes and recomputes today and later. */
+    public void setSchedule(ScheduleData updated) {
+        schedule = updated != null ? updated : new ScheduleData(new ClassEntry[0], new double[0]);
+        profile = WeightProfile.current();
+        int classCount = Math.max(schedule.getClassCount(), ScheduleData.DEFAULT_CLASS_COUNT);
+        classes = new ClassEntry[classCount];
+        classNames = new String[classCount];
+        for (int c = 0; c < classCount; c++) {
+            ClassEntry entry = c < schedule.getClassCount() ? schedule.getClassEntry(c) : ClassEntry.EMPTY;
+            classes[c] = entry;
+            classNames[c] = entry.getName().trim().isEmpty() ? ScheduleCalculator.defaultClassName(c) : entry.getName();
+        }
+        updateBasePriorities();
+        recomputeOpenDays();
+    }
+
+    public void addAssessment(Assessment assessment) {
+        assessments.add(Objects.requireNonNull(assessment, "assessment"));
+        updateBasePriorities();
+        recomputeOpenDays();
+    }
+
+    public boolean removeAssessment(Assessment assessment) {
+        if (!assessments.remove(assessment)) {
+            return false;
+        }
+        updateBasePriorities();
+        recomputeOpenDays();
+        return true;
+    }
+
+    public List<Assessment> getAssessments() {
+        return Collections.unmodifiableList(assessments);
+    }
+
+    /**
+     * Moves today forward. Days that are now in the past are frozen as planned. If today has left the
+     * first week, the horizon slides so today's week is first and only the new weeks are computed.
+     */
+    public void advanceTo(LocalDate date) {
+        if (date.isBefore(today)) {
+            throw new IllegalArgumentException("Cannot move back from " + today + " to " + date);
+        }
+        today = date;
+        // The result's priorities and test flags are today's, so it is rebuilt even within a week.
+        result = null;
+        int shift = (int) ChronoUnit.DAYS.between(startDate, weekStart(date));
+        if (shift == 0) {
+            return;
+        }
+        int kept = Math.max(0, dayCount - shift);
+        System.arraycopy(dayMinutes, dayCount - kept, dayMinutes, 0, kept);
+        System.arraycopy(dayPriorities, dayCount - kept, dayPriorities, 0, kept);
+        startDate = weekStart(date);
+        for (int day = kept; day < dayCount; day++) {
+            computeDay(day);
+        }
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getToday() {
+        return today;
+    }
+
+    public LocalDate getDate(int day) {
+        return startDate.plusDays(day);
+    }
+
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    public int getClassCount() {
+        return classes.length;
+    }
+
+    public boolean isFrozen(int day) {
+        return getDate(day).isBefore(today);
+    }
+
+    // Frozen days keep the class count they were planned with, so later classes read as zero there.
+    public double getPriority(int classIndex, int day) {
+        double[] column = dayPriorities[day];
+        return classIndex < column.length ? column[classIndex] : 0.0;
+    }
+
+    public double getMinutes(int classIndex, int day) {
+        double[] column = dayMinutes[day];
+        return classIndex < column.length ? column[classIndex] : 0.0;
+    }
+
+    /** Number of day columns computed so far, for checking how much work rolling updates do. */
+    public long getComputedDays() {
+        return computedDays;
+    }
+
+    /**
+     * The horizon as a schedule result with one column per day. Priorities and ratios are today's,
+     * and the class entries carry the test flag when an assessment is still ahead.
+     */
+    public ScheduleCalculator.ScheduleResult getResult() {
+        ScheduleCalculator.ScheduleResult current = result;
+        if (current != null) {
+            return current;
+        }
+        int classCount = classes.length;
+        double[] matrix = new double[classCount * dayCount];
+        double totalMinutes = 0.0;
+        for (int day = 0; day < dayCount; day++) {
+            for (int c = 0; c < classCount; c++) {
+                matrix[c * dayCount + day] = getMinutes(c, day);
+                totalMinutes += matrix[c * dayCount + day];
+            }
+        }
+        int todayIndex = (int) Math.min(dayCount - 1, Math.max(0, ChronoUnit.DAYS.between(startDate, today)));
+        double[] priorities = new double[classCount];
+        for (int c = 0; c < classCount; c++) {
+            priorities[c] = getPriority(c, todayIndex);
+        }
+        double[] ratios = new double[classCount];
+        double totalPriority = 0.0;
+        for (double priority : priorities) {
+            totalPriority += priority;
+        }
+        ClassEntry[] entries = new ClassEntry[classCount];
+        for (int c = 0; c < classCount; c++) {
+            ratios[c] = totalPriority > 0.0 ? priorities[c] / totalPriority : 0.0;
+            entries[c] = hasAssessments(c) ? classes[c].withTestUpcoming(hasAssessmentFrom(c, today)) : classes[c];
+        }
+        current = new ScheduleCalculator.ScheduleResult(
+                entries, classNames.clone(), priorities, ratios, matrix, dayCount, totalMinutes, profile);
+        result = current;
+        return current;
+    }
+
+    /** Test weight for a class whose next assessment is {@code daysUntil} days away. */
+    private double rampWeight(long daysUntil) {
+        if (daysUntil < 0 || daysUntil >= RAMP_DAYS) {
+            return 0.0;
+        }
+        return profile.getTestWeight() * RAMP_PEAK * (RAMP_DAYS - daysUntil) / RAMP_DAYS;
+    }
+
+    private void updateBasePriorities() {
+        basePriorities = new double[classes.length];
+        for (int c = 0; c < classes.length; c++) {
+            ClassEntry entry = hasAssessments(c) ? classes[c].withTestUpcoming(false) : classes[c];
+            basePriorities[c] = profile.score(entry);
+        }
+    }
+
+    private void recomputeOpenDays() {
+        for (int day = 0; day < dayCount; day++) {
+            if (!isFrozen(day) || dayMinutes[day] == null) {
+                computeDay(day);
+            }
+        }
+        result = null;
+    }
+
+    private void computeDay(int day) {
+        LocalDate date = getDate(day);
+        int classCount = classes.length;
+        double[] priorities = new double[classCount];
+        double totalPriority = 0.0;
+        for (int c = 0; c < classCount; c++) {
+            priorities[c] = basePriorities[c];
+        }
+        for (Assessment assessment : assessments) {
+            int c = assessment.getClassIndex();
+            if (c < classCount) {
+                double ramp = rampWeight(ChronoUnit.DAYS.between(date, assessment.getDate()));
+                // Overlapping assessments for one class use the nearest, not the sum.
+                priorities[c] = Math.max(priorities[c], basePriorities[c] + ramp);
+            }
+        }
+        for (double priority : priorities) {
+            totalPriority += priority;
+        }
+        double available = minutesOn(date);
+        double[] minutes = new double[classCount];
+        for (int c = 0; c < classCount; c++) {
+            minutes[c] = totalPriority > 0.0 ? available * priorities[c] / totalPriority : 0.0;
+        }
+        dayPriorities[day] = priorities;
+        dayMinutes[day] = minutes;
+        computedDays++;
+    }
+
+    // The schedule's minutes are a weekly pattern starting on Monday.
+    private double minutesOn(LocalDate date) {
+        int weekday = date.getDayOfWeek().getValue() - 1;
+        return weekday < schedule.getDayCount() ? schedule.getMinutes(weekday) : 0.0;
+    }
+
+    private boolean hasAssessments(int classIndex) {
+        for (Assessment assessment : assessments) {
+            if (assessment.getClassIndex() == classIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasAssessmentFrom(int classIndex, LocalDate date) {
+        for (Assessment assessment : assessments) {
+            if (assessment.getClassIndex() == classIndex && !assessment.getDate().isBefore(date)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.minusDays(date.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+    }
+}
@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local schedule store kept in a single append-only binary file.
+ *
+ * <p>The file starts with a 16 byte header (magic, format version, offset of the newest record).
+ * Each save appends a record: payload length, profile id, class and day counts, the classes as
+ * enum ordinals and byte grades, the daily minutes, then a CRC32 of the payload. The newest record
+ * can be read straight from the header, so showing the last schedule does not depend on the size of
+ * the store. Opening checks the newest record and any records written after it, and cuts off a torn
+ * or corrupt tail so saves always append after the last good record; the profile index is only
+ * built, from record headers alone, when another profile is requested. {@link #compact()} rewrites
+ * the file keeping only the newest record of each profile, and {@link #open} compacts a store that
+ * has grown past {@link #COMPACT_THRESHOLD} bytes when most of it is superseded records.
+ */
+public final class FileScheduleStore implements ScheduleRepository {
+
+    static final int MAGIC = 0x49425353;
+    static final short FORMAT_VERSION = 1;
+    static final long COMPACT_THRESHOLD = 1 << 20;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int LATEST_OFFSET_POSITION = 8;
+    private static final int RECORD_PREFIX = 4;
+    private static final int CRC_SIZE = 4;
+
+    private final Path path;
+    private FileChannel channel;
+    private long size;
+    private long latestOffset;
+    private Map<String, Long> index;
+    private int indexedRecords;
+
+    private FileScheduleStore(Path path) throws IOException {
+        this.path = path;
+        openChannel();
+    }
+
+    public static FileScheduleStore open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileScheduleStore store = new FileScheduleStore(path);
+        try {
+            store.compactIfSparse();
+        } catch (IOException | RuntimeException ex) {
+            store.close();
+            throw ex;
+        }
+        return store;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized ScheduleData loadLatest() throws IOException {
+        if (latestOffset == 0) {
+            return null;
+        }
+        return readRecord(latestOffset).schedule;
+    }
+
+    public synchronized String getLatestProfileId() throws IOException {
+        if (latestOffset == 0) {
+            return null;
+        }
+        return readRecord(latestOffset).profileId;
+    }
+
+    @Override
+    public synchronized ScheduleData load(String profileId) throws IOException {
+        Long offset = index().get(profileId);
+        return offset == null ? null : readRecord(offset).schedule;
+    }
+
+    public synchronized int getProfileCount() throws IOException {
+        return index().size();
+    }
+
+    @Override
+    public void save(String profileId, ScheduleData schedule) throws IOException {
+        Map<String, ScheduleData> single = new HashMap<>(2);
+        single.put(profileId, schedule);
+        saveAll(single);
+    }
+
+    @Override
+    public synchronized void saveAll(Map<String, ScheduleData> schedules) throws IOException {
+        if (schedules.isEmpty()) {
+            return;
+        }
+        ScheduleEvents.Persistence event = ScheduleEvents.beginPersistence("file");
+        long written = 0;
+        Exception failure = null;
+        try {
+            long position = size;
+            long last = latestOffset;
+            Map<String, Long> offsets = new HashMap<>();
+            for (Map.Entry<String, ScheduleData> entry : schedules.entrySet()) {
+                ByteBuffer record = encode(entry.getKey(), entry.getValue());
+                writeFully(record, position);
+                offsets.put(entry.getKey(), position);
+                last = position;
+                position += record.limit();
+            }
+            channel.force(false);
+            // The index only points at records once they are durable; a failed save is overwritten later.
+            if (index != null) {
+                index.putAll(offsets);
+                indexedRecords += schedules.size();
+            }
+            written = position - size;
+            size = position;
+            latestOffset = last;
+            writeLatestOffset(last);
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            ScheduleEvents.commitPersistence(event, schedules.size(), failure == null ? schedules.size() : 0, written, failure);
+        }
+    }
+
+    public synchronized void compact() throws IOException {
+        Map<String, Long> live = index();
+        Map<String, Long> compacted = new HashMap<>();
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel target = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = HEADER_SIZE;
+            long last = 0;
+            // The newest record goes last: open treats any record after the header's offset as newer.
+            String latestId = null;
+            for (Map.Entry<String, Long> entry : live.entrySet()) {
+                if (entry.getValue() == latestOffset) {
+                    latestId = entry.getKey();
+                    continue;
+                }
+                compacted.put(entry.getKey(), position);
+                position = copyRecord(target, entry.getValue(), position);
+            }
+            if (latestId != null) {
+                compacted.put(latestId, position);
+                last = position;
+                copyRecord(target, latestOffset, position);
+            }
+            ByteBuffer header = header(last);
+            while (header.hasRemaining()) {
+                target.write(header, HEADER_SIZE - header.remaining());
+            }
+            target.force(true);
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openChannel();
+        index = compacted;
+        indexedRecords = compacted.size();
+    }
+
+    // Re-encodes the record at offset into target at position and returns the position after it.
+    private long copyRecord(FileChannel target, long offset, long position) throws IOException {
+        Record record = readRecord(offset);
+        ByteBuffer encoded = encode(record.profileId, record.schedule);
+        while (encoded.hasRemaining()) {
+            position += target.write(encoded, position);
+        }
+        return position;
+    }
+
+    // Compacting reads every record, so it only pays off when most of a large file is superseded.
+    private synchronized void compactIfSparse() throws IOException {
+        if (size > COMPACT_THRESHOLD && index().size() * 2 <= indexedRecords) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        index = null;
+        if (size == 0) {
+            writeFully(header(0), 0);
+            size = HEADER_SIZE;
+            latestOffset = 0;
+            return;
+        }
+        if (size < HEADER_SIZE) {
+            throw new IOException(path + " is not a schedule store");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a schedule store");
+        }
+        short version = header.getShort(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException(path + " uses store format " + version + ", expected " + FORMAT_VERSION);
+        }
+        latestOffset = header.getLong(LATEST_OFFSET_POSITION);
+        recoverTail();
+    }
+
+    /*
+     * Everything up to the end of the record named in the header was forced before the header was
+     * written, so only that record and what follows it are checked. Good records after it belong to a
+     * save whose header update was lost and are kept; the first bad one and everything after it is a
+     * torn or corrupt write and is cut off before the next save appends. If the header's record is
+     * itself bad, the whole file is checked from the start.
+     */
+    private void recoverTail() throws IOException {
+        long position = HEADER_SIZE;
+        long last = 0;
+        if (latestOffset >= HEADER_SIZE && latestOffset < size) {
+            int length = checkedLength(latestOffset);
+            if (length > 0) {
+                last = latestOffset;
+                position = latestOffset + RECORD_PREFIX + length;
+            }
+        }
+        while (position < size) {
+            int length = checkedLength(position);
+            if (length < 0) {
+                break;
+            }
+            last = position;
+            position += RECORD_PREFIX + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(false);
+            size = position;
+        }
+        if (last != latestOffset) {
+            latestOffset = last;
+            writeLatestOffset(last);
+        }
+    }
+
+    // Returns the payload length of a complete record whose checksum matches, or -1.
+    private int checkedLength(long offset) throws IOException {
+        if (offset + RECORD_PREFIX > size) {
+            return -1;
+        }
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(RECORD_PREFIX);
+        readFully(lengthBuffer, offset);
+        int length = lengthBuffer.getInt(0);
+        if (length < 2 + CRC_SIZE || offset + RECORD_PREFIX + length > size) {
+            return -1;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_PREFIX);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length - CRC_SIZE);
+        int idLength = payload.getShort(0) & 0xFFFF;
+        if ((int) crc.getValue() != payload.getInt(length - CRC_SIZE) || 2 + idLength + CRC_SIZE > length) {
+            return -1;
+        }
+        return length;
+    }
+
+    // Builds the profile index from record prefixes only; the tail was already checked on open.
+    private Map<String, Long> index() throws IOException {
+        if (index != null) {
+            return index;
+        }
+        Map<String, Long> built = new HashMap<>();
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX + 2);
+        long position = HEADER_SIZE;
+        int records = 0;
+        while (position + RECORD_PREFIX + 2 <= size) {
+            prefix.clear();
+            readFully(prefix, position);
+            int length = prefix.getInt(0);
+            int idLength = prefix.getShort(RECORD_PREFIX) & 0xFFFF;
+            long end = position + RECORD_PREFIX + length;
+            if (length < 2 + idLength + CRC_SIZE || end > size) {
+                throw new IOException("Corrupt schedule record at offset " + position);
+            }
+            ByteBuffer id = ByteBuffer.allocate(idLength);
+            readFully(id, position + RECORD_PREFIX + 2);
+            built.put(new String(id.array(), StandardCharsets.UTF_8), position);
+            records++;
+            position = end;
+        }
+        index = built;
+        indexedRecords = records;
+        return built;
+    }
+
+    private Record readRecord(long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(RECORD_PREFIX);
+        readFully(lengthBuffer, offset);
+        int length = lengthBuffer.getInt(0);
+        if (length < CRC_SIZE || offset + RECORD_PREFIX + length > size) {
+            throw new IOException("Corrupt schedule record at offset " + offset);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_PREFIX);
+        payload.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length - CRC_SIZE);
+        if ((int) crc.getValue() != payload.getInt(length - CRC_SIZE)) {
+            throw new IOException("Checksum mismatch in schedule record at offset " + offset);
+        }
+        try {
+            return decode(payload);
+        } catch (RuntimeException ex) {
+            throw new IOException("Unreadable schedule record at offset " + offset, ex);
+        }
+    }
+
+    private static Record decode(ByteBuffer payload) {
+        String profileId = ScheduleCodec.readString(payload);
+        return new Record(profileId, ScheduleCodec.readSchedule(payload));
+    }
+
+    private static ByteBuffer encode(String profileId, ScheduleData schedule) {
+        byte[] id = ScheduleCodec.utf8(profileId);
+        ByteBuffer body = ScheduleCodec.encodeSchedule(schedule);
+        int length = 2 + id.length + body.remaining() + CRC_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX + length);
+        buffer.putInt(length);
+        ScheduleCodec.writeString(buffer, id);
+        buffer.put(body);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_PREFIX, length - CRC_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer header(long latest) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(FORMAT_VERSION);
+        header.putShort((short) 0);
+        header.putLong(latest);
+        header.flip();
+        return header;
+    }
+
+    private void writeLatestOffset(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(0, offset);
+        writeFully(buffer, LATEST_OFFSET_POSITION);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                throw new IOException("Unexpected end of schedule store at offset " + at);
+            }
+            at += read;
+        }
+    }
+
+    private static final class Record {
+        private final String profileId;
+        private final ScheduleData schedule;
+
+        private Record(String profileId, ScheduleData schedule) {
+            this.profileId = profileId;
+            this.schedule = schedule;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Keeps a calculated schedule up to date as single fields are edited. Per-class priorities and their
+ * total are kept between edits, so changing one class only re-scores that class before the ratios
+ * are renormalised, and changing one day only touches that day's column. Each edit reports the table
+ * cells whose displayed value changed, using the same row and column layout as
+ * {@link ScheduleCalculator.ScheduleResult#getValueAt}. Every class is scored with the profile that
+ * was current when the schedule was last set, so single edits never mix in a newer one.
+ */
+public final class IncrementalSchedule {
+
+    private ScheduleData schedule;
+    private WeightProfile profile;
+    private int classCount;
+    private int dayCount;
+    private double[] priorities;
+    private double totalPriority;
+    private double[] ratios;
+    private String[] classNames;
+    private double[] minutes;
+    private int[] displayedMinutes;
+    private ScheduleCalculator.ScheduleResult result;
+
+    public IncrementalSchedule(ScheduleData schedule) {
+        reset(schedule);
+    }
+
+    public ScheduleData getSchedule() {
+        return schedule;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    public CellChanges setSchedule(ScheduleData updated) {
+        reset(updated);
+        return CellChanges.all(classCount, dayCount);
+    }
+
+    public CellChanges setClass(int index, ClassEntry entry) {
+        ScheduleData updated = schedule.withClass(index, entry);
+        if (updated == schedule) {
+            return CellChanges.none(classCount, dayCount);
+        }
+        if (index >= classCount) {
+            return setSchedule(updated);
+        }
+        schedule = updated;
+        result = null;
+        CellChanges changes = CellChanges.none(classCount, dayCount);
+
+        ClassEntry value = updated.getClassEntry(index);
+        String name = nameOf(value, index);
+        if (!name.equals(classNames[index])) {
+            classNames[index] = name;
+            changes.mark(index, 0);
+        }
+
+        double priority = profile.score(value);
+        if (Double.compare(priority, priorities[index]) == 0) {
+            return changes;
+        }
+        priorities[index] = priority;
+        // Re-summed rather than adjusted by the difference so repeated edits do not drift away from
+        // what a full calculate would produce.
+        double total = 0.0;
+        for (double p : priorities) {
+            total += p;
+        }
+        totalPriority = total;
+        for (int i = 0; i < classCount; i++) {
+            ratios[i] = priorities[i] / totalPriority;
+            for (int day = 0; day < dayCount; day++) {
+                updateCell(i, day, changes);
+            }
+        }
+        return changes;
+    }
+
+    public CellChanges setMinutes(int day, double dayMinutes) {
+        ScheduleData updated = schedule.withMinutes(day, dayMinutes);
+        if (updated == schedule) {
+            return CellChanges.none(classCount, dayCount);
+        }
+        if (day >= dayCount) {
+            return setSchedule(updated);
+        }
+        schedule = updated;
+        result = null;
+        CellChanges changes = CellChanges.none(classCount, dayCount);
+        for (int i = 0; i < classCount; i++) {
+            updateCell(i, day, changes);
+        }
+        return changes;
+    }
+
+    public double getTotalPriority() {
+        return totalPriority;
+    }
+
+    /** Returns an immutable snapshot of the current state; it is reused until the next edit. */
+    public ScheduleCalculator.ScheduleResult getResult() {
+        ScheduleCalculator.ScheduleResult current = result;
+        if (current == null) {
+            double total = 0.0;
+            for (int day = 0; day < schedule.getDayCount(); day++) {
+                total += schedule.getMinutes(day);
+            }
+            current = new ScheduleCalculator.ScheduleResult(schedule.classArray(),
+                    classNames.clone(), priorities.clone(), ratios.clone(), minutes.clone(), dayCount, total, profile);
+            result = current;
+        }
+        return current;
+    }
+
+    private void reset(ScheduleData updated) {
+        schedule = updated != null ? updated : new ScheduleData((ClassEntry[]) null, null);
+        profile = WeightProfile.current();
+        classCount = Math.max(schedule.getClassCount(), ScheduleData.DEFAULT_CLASS_COUNT);
+        dayCount = Math.max(schedule.getDayCount(), ScheduleData.DEFAULT_DAY_COUNT);
+        priorities = new double[classCount];
+        ratios = new double[classCount];
+        classNames = new String[classCount];
+        minutes = new double[classCount * dayCount];
+        displayedMinutes = new int[classCount * dayCount];
+        result = null;
+
+        double total = 0.0;
+        for (int i = 0; i < classCount; i++) {
+            ClassEntry entry = i < schedule.getClassCount() ? schedule.getClassEntry(i) : ClassEntry.EMPTY;
+            priorities[i] = profile.score(entry);
+            classNames[i] = nameOf(entry, i);
+            total += priorities[i];
+        }
+        totalPriority = total;
+        for (int i = 0; i < classCount; i++) {
+            ratios[i] = priorities[i] / totalPriority;
+            for (int day = 0; day < dayCount; day++) {
+                updateCell(i, day, null);
+            }
+        }
+    }
+
+    private void updateCell(int classIndex, int day, CellChanges changes) {
+        int cell = classIndex * dayCount + day;
+        double value = (day < schedule.getDayCount() ? schedule.getMinutes(day) : 0.0) * ratios[classIndex];
+        minutes[cell] = value;
+        int displayed = (int) Math.round(Math.max(0.0, value));
+        if (displayed != displayedMinutes[cell] && changes != null) {
+            changes.mark(classIndex, day + 1);
+        }
+        displayedMinutes[cell] = displayed;
+    }
+
+    private static String nameOf(ClassEntry entry, int index) {
+        String name = entry.getName();
+        return name.trim().isEmpty() ? ScheduleCalculator.defaultClassName(index) : name;
+    }
+
+    /**
+     * Table cells touched by one edit, as a bit per cell in row-major order over the
+     * {@code dayCount + 1} table columns (the class name is column zero).
+     */
+    public static final class CellChanges {
+        private final int rowCount;
+        private final int columnCount;
+        private final BitSet cells;
+        private final boolean structural;
+
+        private CellChanges(int rowCount, int columnCount, boolean structural) {
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+            this.cells = new BitSet(rowCount * columnCount);
+            this.structural = structural;
+        }
+
+        static CellChanges none(int classCount, int dayCount) {
+            return new CellChanges(classCount, dayCount + 1, false);
+        }
+
+        static CellChanges all(int classCount, int dayCount) {
+            CellChanges changes = new CellChanges(classCount, dayCount + 1, true);
+            changes.cells.set(0, classCount * (dayCount + 1));
+            return changes;
+        }
+
+        private void mark(int row, int column) {
+            cells.set(row * columnCount + column);
+        }
+
+        /** True when the table may have changed shape, so every cell should be treated as new. */
+        public boolean isStructural() {
+            return structural;
+        }
+
+        public boolean isEmpty() {
+            return cells.isEmpty();
+        }
+
+        public int size() {
+            return cells.cardinality();
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int getColumnCount() {
+            return columnCount;
+        }
+
+        public boolean isChanged(int row, int column) {
+            return cells.get(row * columnCount + column);
+        }
+
+        /** Returns the changed cells as {@code {row, column}} pairs in row-major order. */
+        public int[][] toCells() {
+            int[][] result = new int[cells.cardinality()][];
+            int next = 0;
+            for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+                result[next++] = new int[]{cell / columnCount, cell % columnCount};
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return structural ? "CellChanges[all]" : "CellChanges" + Arrays.deepToString(toCells());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores schedules in two tables, one row per class and one row per day. Statements are prepared once
+ * per connection and every save is a single transaction made of JDBC batches, so saving a whole
+ * schedule or a whole cohort costs a handful of round trips. Works with any JDBC database, including
+ * an embedded one such as H2 for local testing.
+ */
+public final class JdbcScheduleRepository implements ScheduleRepository {
+
+    private static final String CREATE_CLASS_TABLE =
+            "create table if not exists schedule_class ("
+                    + "profile_id varchar(64) not null, "
+                    + "class_index int not null, "
+                    + "name varchar(255) not null, "
+                    + "level varchar(8) not null, "
+                    + "current_grade smallint not null, "
+                    + "target_grade smallint not null, "
+                    + "test_upcoming smallint not null, "
+                    + "difficulty varchar(16) not null, "
+                    + "primary key (profile_id, class_index))";
+    private static final String CREATE_DAY_TABLE =
+            "create table if not exists schedule_day ("
+                    + "profile_id varchar(64) not null, "
+                    + "day_index int not null, "
+                    + "minutes double precision not null, "
+                    + "primary key (profile_id, day_index))";
+
+    private static final String DELETE_CLASSES = "delete from schedule_class where profile_id = ?";
+    private static final String DELETE_DAYS = "delete from schedule_day where profile_id = ?";
+    private static final String INSERT_CLASS =
+            "insert into schedule_class (profile_id, class_index, name, level, current_grade, target_grade, test_upcoming, difficulty) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_DAY = "insert into schedule_day (profile_id, day_index, minutes) values (?, ?, ?)";
+    private static final String SELECT_CLASSES =
+            "select class_index, name, level, current_grade, target_grade, test_upcoming, difficulty "
+                    + "from schedule_class where profile_id = ? order by class_index";
+    private static final String SELECT_DAYS = "select day_index, minutes from schedule_day where profile_id = ? order by day_index";
+
+    private final Connection connection;
+    private PreparedStatement deleteClasses;
+    private PreparedStatement deleteDays;
+    private PreparedStatement insertClass;
+    private PreparedStatement insertDay;
+    private PreparedStatement selectClasses;
+    private PreparedStatement selectDays;
+
+    public JdbcScheduleRepository(Connection connection) throws IOException {
+        this.connection = connection;
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException ex) {
+            throw new IOException("Could not start a transaction", ex);
+        }
+    }
+
+    public static JdbcScheduleRepository open(String url, String user, String password) throws IOException {
+        try {
+            return new JdbcScheduleRepository(DriverManager.getConnection(url, user, password));
+        } catch (SQLException ex) {
+            throw new IOException("Could not connect to " + url, ex);
+        }
+    }
+
+    public synchronized void createSchema() throws IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_CLASS_TABLE);
+            statement.executeUpdate(CREATE_DAY_TABLE);
+            connection.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException("Could not create schedule tables", ex);
+        }
+    }
+
+    @Override
+    public void save(String profileId, ScheduleData schedule) throws IOException {
+        saveAll(Collections.singletonMap(profileId, schedule));
+    }
+
+    @Override
+    public synchronized void saveAll(Map<String, ScheduleData> schedules) throws IOException {
+        if (schedules.isEmpty()) {
+            return;
+        }
+        long start = ScheduleMetrics.start();
+        ScheduleEvents.Persistence event = ScheduleEvents.beginPersistence("jdbc");
+        int rows = 0;
+        int written = 0;
+        Exception failure = null;
+        try {
+            prepareWrites();
+            for (String profileId : schedules.keySet()) {
+                deleteClasses.setString(1, profileId);
+                deleteClasses.addBatch();
+                deleteDays.setString(1, profileId);
+                deleteDays.addBatch();
+            }
+            deleteClasses.executeBatch();
+            deleteDays.executeBatch();
+
+            for (Map.Entry<String, ScheduleData> entry : schedules.entrySet()) {
+                rows += addRows(entry.getKey(), entry.getValue());
+            }
+            insertClass.executeBatch();
+            insertDay.executeBatch();
+            connection.commit();
+            ScheduleMetrics.DATABASE_ROWS.add(rows);
+            written = rows;
+        } catch (SQLException ex) {
+            failure = ex;
+            clearBatches();
+            rollback();
+            throw new IOException("Could not save " + schedules.size() + " schedule(s)", ex);
+        } catch (RuntimeException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            ScheduleMetrics.DATABASE_WRITE.stop(start);
+            if (failure != null) {
+                ScheduleMetrics.DATABASE_FAILURES.increment();
+            }
+            ScheduleEvents.commitPersistence(event, schedules.size(), written, 0, failure);
+        }
+    }
+
+    @Override
+    public synchronized ScheduleData load(String profileId) throws IOException {
+        try {
+            if (selectClasses == null) {
+                selectClasses = connection.prepareStatement(SELECT_CLASSES);
+                selectDays = connection.prepareStatement(SELECT_DAYS);
+            }
+            List<ClassEntry> classes = new ArrayList<>();
+            selectClasses.setString(1, profileId);
+            try (ResultSet rows = selectClasses.executeQuery()) {
+                while (rows.next()) {
+                    int index = rows.getInt(1);
+                    while (classes.size() <= index) {
+                        classes.add(ClassEntry.EMPTY);
+                    }
+                    classes.set(index, new ClassEntry(
+                            rows.getString(2),
+                            ClassEntry.Level.valueOf(rows.getString(3)),
+                            rows.getInt(4),
+                            rows.getInt(5),
+                            rows.getInt(6) != 0,
+                            ClassEntry.Difficulty.valueOf(rows.getString(7))));
+                }
+            }
+            double[] minutes = new double[0];
+            selectDays.setString(1, profileId);
+            try (ResultSet rows = selectDays.executeQuery()) {
+                while (rows.next()) {
+                    int day = rows.getInt(1);
+                    if (day >= minutes.length) {
+                        minutes = Arrays.copyOf(minutes, day + 1);
+                    }
+                    minutes[day] = rows.getDouble(2);
+                }
+            }
+            connection.commit();
+            if (classes.isEmpty() && minutes.length == 0) {
+                return null;
+            }
+            return new ScheduleData(classes.toArray(new ClassEntry[0]), minutes);
+        } catch (SQLException | IllegalArgumentException ex) {
+            rollback();
+            throw new IOException("Could not load schedule " + profileId, ex);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            throw new IOException("Could not close the schedule database", ex);
+        }
+    }
+
+    private int addRows(String profileId, ScheduleData schedule) throws SQLException {
+        for (int i = 0; i < schedule.getClassCount(); i++) {
+            ClassEntry entry = schedule.getClassEntry(i);
+            insertClass.setString(1, profileId);
+            insertClass.setInt(2, i);
+            insertClass.setString(3, entry.getName());
+            insertClass.setString(4, entry.getLevel().name());
+            insertClass.setShort(5, entry.getCurrentGrade());
+            insertClass.setShort(6, entry.getTargetGrade());
+            insertClass.setShort(7, (short) (entry.isTestUpcoming() ? 1 : 0));
+            insertClass.setString(8, entry.getDifficulty().name());
+            insertClass.addBatch();
+        }
+        for (int day = 0; day < schedule.getDayCount(); day++) {
+            insertDay.setString(1, profileId);
+            insertDay.setInt(2, day);
+            insertDay.setDouble(3, schedule.getMinutes(day));
+            insertDay.addBatch();
+        }
+        return schedule.getClassCount() + schedule.getDayCount();
+    }
+
+    private void prepareWrites() throws SQLException {
+        if (insertClass == null) {
+            deleteClasses = connection.prepareStatement(DELETE_CLASSES);
+            deleteDays = connection.prepareStatement(DELETE_DAYS);
+            insertClass = connection.prepareStatement(INSERT_CLASS);
+            insertDay = connection.prepareStatement(INSERT_DAY);
+        }
+    }
+
+    private void clearBatches() {
+        try {
+            for (PreparedStatement statement : new PreparedStatement[]{deleteClasses, deleteDays, insertClass, insertDay}) {
+                if (statement != null) {
+                    statement.clearBatch();
+                }
+            }
+        } catch (SQLException ignored) {
+            // Statements that cannot clear their batch are closed with the connection.
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // The original failure is more useful to the caller than the rollback failure.
+        }
+    }
+}
@@ -1,9 +1,19 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class Menu {
     public static void main(String[] args) {
+        StartupTiming.mark("main");
+        ScheduleEvents.installEdtMonitor();
+        Path weights = WeightProfile.useConfigured();
+        if (weights != null) {
+            WeightProfile.watch(weights, 2, TimeUnit.SECONDS);
+        }
         SwingUtilities.invokeLater(() -> {
             Allmenu allmenu = new Allmenu();
             allmenu.show();
@@ -13,12 +23,19 @@ public class Menu {
 
 class Allmenu {
 
+    static final String PROFILE_ID = "default";
+    static final String STORE_PATH_PROPERTY = "schedule.store.path";
+
     private final JFrame frame = new JFrame("IB Subject Scheduler");
     private final CardLayout cardLayout = new CardLayout();
     private final JPanel cardPanel = new JPanel(cardLayout);
     private AddSchedule1 scheduleWizard;
     private ScheduleViewerPanel scheduleViewer;
-    private ScheduleData savedSchedule;
+    private final FileScheduleStore localStore = openLocalStore();
+    private ScheduleData savedSchedule = loadSavedSchedule();
+    private final ScheduleWriteBehind scheduleWriter = createScheduleWriter();
+    private final ScheduleResultCache resultCache = new ScheduleResultCache(64);
+    private final AsyncScheduleCalculator asyncCalculator = new AsyncScheduleCalculator(resultCache);
 
     Allmenu() {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -26,9 +43,21 @@ class Allmenu {
         frame.setLocationRelativeTo(null);
         frame.setContentPane(cardPanel);
         cardPanel.add(createMenuPanel(), "menu");
+        ScheduleMetrics.registerMBeans();
+        if (EdtLatencyMonitor.isEnabled()) {
+            EdtLatencyMonitor monitor = EdtLatencyMonitor.start(100, 50, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                monitor.close();
+                System.err.println(monitor);
+                System.err.println("schedule compute " + asyncCalculator);
+                System.err.print(ScheduleMetrics.dump());
+            }, "edt-latency-report"));
+        }
+        StartupTiming.mark("menu-constructed");
     }
 
     void show() {
+        StartupTiming.markAfterPaint(frame.getRootPane(), "first-paint");
         frame.setVisible(true);
     }
 
@@ -44,8 +73,11 @@ class Allmenu {
 
     void showScheduleWizard(ScheduleData scheduleToEdit) {
         if (scheduleWizard == null) {
+            StartupTiming.mark("wizard-open");
             scheduleWizard = new AddSchedule1(this);
             cardPanel.add(scheduleWizard, "wizard");
+            StartupTiming.mark("wizard-constructed");
+            StartupTiming.markAfterPaint(scheduleWizard, "wizard-first-paint");
         }
         if (scheduleToEdit == null) {
             scheduleWizard.reset();
@@ -76,16 +108,105 @@ class Allmenu {
     }
 
     void saveSchedule(ScheduleData schedule) {
+        long start = ScheduleMetrics.start();
         savedSchedule = schedule;
+        if (scheduleWriter != null) {
+            try {
+                if (!scheduleWriter.offer(PROFILE_ID, schedule, 0, TimeUnit.MILLISECONDS)) {
+                    reportSaveFailure(new IOException("The save queue is full. Try again in a moment."));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (scheduleViewer != null) {
             scheduleViewer.updateSchedule(schedule);
         }
+        ScheduleMetrics.SAVE_SCHEDULE.stop(start);
+    }
+
+    private FileScheduleStore openLocalStore() {
+        String path = System.getProperty(STORE_PATH_PROPERTY,
+                Paths.get(System.getProperty("user.home"), ".ib-scheduler", "schedules.dat").toString());
+        try {
+            return FileScheduleStore.open(Paths.get(path));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(null, "Saved schedules are unavailable: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private ScheduleData loadSavedSchedule() {
+        if (localStore == null) {
+            return null;
+        }
+        try {
+            return localStore.loadLatest();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(null, "Your last schedule could not be read: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Saves always go to the local store when it is open, because startup restores from it; a configured
+    // database receives them as well.
+    private ScheduleWriteBehind createScheduleWriter() {
+        String url = System.getProperty(CreateDataBase.URL_PROPERTY);
+        boolean database = url != null && !url.isEmpty();
+        if (!database && localStore == null) {
+            return null;
+        }
+        String user = System.getProperty(CreateDataBase.USER_PROPERTY, "root");
+        String password = System.getProperty(CreateDataBase.PASSWORD_PROPERTY, "");
+        ScheduleWriteBehind writer = new ScheduleWriteBehind(() -> {
+            ScheduleJournal journal = localStore == null ? null
+                    : ScheduleJournal.open(localStore.getPath().resolveSibling("schedules.journal"));
+            JdbcScheduleRepository remote = null;
+            if (database) {
+                try {
+                    remote = JdbcScheduleRepository.open(url, user, password);
+                    remote.createSchema();
+                } catch (IOException | RuntimeException ex) {
+                    if (remote != null) {
+                        remote.close();
+                    }
+                    if (journal != null) {
+                        journal.close();
+                    }
+                    throw ex;
+                }
+            }
+            return journal == null ? remote : new LocalRepository(localStore, journal, remote);
+        }, 64, 32, this::reportSaveFailure);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writer.close(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "schedule-writer-shutdown"));
+        return writer;
+    }
+
+    private void reportSaveFailure(IOException ex) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame,
+                "Your schedule could not be saved: " + ex.getMessage(),
+                "Save failed",
+                JOptionPane.ERROR_MESSAGE));
     }
 
     JFrame getFrame() {
         return frame;
     }
 
+    ScheduleResultCache getResultCache() {
+        return resultCache;
+    }
+
+    AsyncScheduleCalculator getAsyncCalculator() {
+        return asyncCalculator;
+    }
+
     ScheduleData getSavedSchedule() {
         return savedSchedule;
     }
@@ -179,15 +300,63 @@ class Allmenu {
         return button;
     }
 
-    private class ScheduleViewerPanel extends JPanel {
+    // Writes the latest copy to the store for fast startup and every change to the revision journal,
+    // then to the database when one is configured.
+    private static final class LocalRepository implements ScheduleRepository {
+        private final FileScheduleStore store;
+        private final ScheduleJournal journal;
+        private final ScheduleRepository remote;
+
+        LocalRepository(FileScheduleStore store, ScheduleJournal journal, ScheduleRepository remote) {
+            this.store = store;
+            this.journal = journal;
+            this.remote = remote;
+        }
+
+        @Override
+        public void save(String profileId, ScheduleData schedule) throws IOException {
+            journal.save(profileId, schedule);
+            store.save(profileId, schedule);
+            if (remote != null) {
+                remote.save(profileId, schedule);
+            }
+        }
+
+        @Override
+        public void saveAll(Map<String, ScheduleData> schedules) throws IOException {
+            journal.saveAll(schedules);
+            store.saveAll(schedules);
+            if (remote != null) {
+                remote.saveAll(schedules);
+            }
+        }
+
+        @Override
+        public ScheduleData load(String profileId) throws IOException {
+            return store.load(profileId);
+        }
 
-        private final DefaultTableModel tableModel = new DefaultTableModel(ScheduleCalculator.COLUMN_NAMES, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+        @Override
+        public void close() throws IOException {
+            try {
+                journal.close();
+            } finally {
+                try {
+                    store.close();
+                } finally {
+                    if (remote != null) {
+                        remote.close();
+                    }
+                }
             }
-        };
+        }
+    }
+
+    private class ScheduleViewerPanel extends JPanel {
+
+        private final ScheduleTableModel tableModel = new ScheduleTableModel();
         private final JLabel summaryLabel = new JLabel("", SwingConstants.LEFT);
+        private final AsyncScheduleCalculator.Channel updates = asyncCalculator.newChannel(this::showResult, this::showFailure);
 
         ScheduleViewerPanel() {
             setLayout(new BorderLayout(24, 24));
@@ -209,8 +378,7 @@ class Allmenu {
             header.add(Box.createVerticalStrut(6));
             header.add(subheading);
 
-            JTable table = new JTable(tableModel);
-            ScheduleTableUtil.configure(table);
+            JTable table = ScheduleTableUtil.createTable(tableModel);
 
             JScrollPane scrollPane = new JScrollPane(table);
             scrollPane.setBorder(BorderFactory.createCompoundBorder(
@@ -244,17 +412,22 @@ class Allmenu {
 
         void updateSchedule(ScheduleData schedule) {
             if (schedule == null) {
-                tableModel.setRowCount(0);
+                updates.cancel();
+                tableModel.setResult(null);
                 summaryLabel.setText("No schedule saved yet.");
                 return;
             }
-            ScheduleCalculator.ScheduleResult result = ScheduleCalculator.calculate(schedule.getClassValues(), schedule.getMinutesPerDay());
-            tableModel.setRowCount(0);
-            Object[][] rows = result.getTableData();
-            for (Object[] row : rows) {
-                tableModel.addRow(row);
-            }
+            updates.request(schedule);
+        }
+
+        private void showResult(ScheduleCalculator.ScheduleResult result) {
+            tableModel.setResult(result);
             summaryLabel.setText(result.getSummaryText());
         }
+
+        private void showFailure(RuntimeException ex) {
+            tableModel.setResult(null);
+            summaryLabel.setText("Could not calculate this schedule.");
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,453 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Whole-minute alternative to the proportional split in {@link ScheduleCalculator}, for schedules with
+ * study rules: a minimum block length, a daily cap per class and a weekly minimum per class.
+ *
+ * <p>Each day is shared by water-filling: every class gets {@code level * priority} minutes, clamped to
+ * its cap (and to any reserved minimum), with the level chosen so the day's minutes are used up. A
+ * class whose share comes out shorter than the minimum block is dropped from that day and the rest is
+ * re-shared; fractions are then rounded with the largest-remainder method. Weekly minimums are met by
+ * reserving time from a first pass, topping up classes that fell short on the days with the most free
+ * time, highest priority first, and sharing every day again around the reservations. Minutes that no
+ * class may take because of the rules are reported as unallocated rather than forced in.
+ */
+public final class ScheduleAllocator {
+
+    public static final int NO_CAP = Integer.MAX_VALUE;
+
+    private ScheduleAllocator() {
+    }
+
+    /** Immutable allocation rules. Per-class settings are by class index; the {@code with} methods return a copy. */
+    public static final class Rules {
+        public static final Rules DEFAULTS = new Rules(1, NO_CAP, new int[0], new int[0]);
+
+        private final int minimumBlock;
+        private final int dailyCap;
+        private final int[] classDailyCaps;
+        private final int[] weeklyMinimums;
+
+        private Rules(int minimumBlock, int dailyCap, int[] classDailyCaps, int[] weeklyMinimums) {
+            this.minimumBlock = minimumBlock;
+            this.dailyCap = dailyCap;
+            this.classDailyCaps = classDailyCaps;
+            this.weeklyMinimums = weeklyMinimums;
+        }
+
+        public Rules withMinimumBlock(int minutes) {
+            if (minutes < 1) {
+                throw new IllegalArgumentException("Minimum block must be at least one minute: " + minutes);
+            }
+            return new Rules(minutes, dailyCap, classDailyCaps, weeklyMinimums);
+        }
+
+        /** Sets the daily cap for every class without a cap of its own. */
+        public Rules withDailyCap(int minutes) {
+            return new Rules(minimumBlock, checkMinutes(minutes, "Daily cap"), classDailyCaps, weeklyMinimums);
+        }
+
+        public Rules withDailyCap(int classIndex, int minutes) {
+            checkMinutes(minutes, "Daily cap");
+            // Zero in the per-class array means "use the shared cap", so store the cap plus one.
+            int[] caps = withValue(classDailyCaps, classIndex, minutes == NO_CAP ? NO_CAP : minutes + 1);
+            return new Rules(minimumBlock, dailyCap, caps, weeklyMinimums);
+        }
+
+        public Rules withWeeklyMinimum(int classIndex, int minutes) {
+            int[] minimums = withValue(weeklyMinimums, classIndex, checkMinutes(minutes, "Weekly minimum"));
+            return new Rules(minimumBlock, dailyCap, classDailyCaps, minimums);
+        }
+
+        public int getMinimumBlock() {
+            return minimumBlock;
+        }
+
+        public int getDailyCap(int classIndex) {
+            int cap = classIndex < classDailyCaps.length ? classDailyCaps[classIndex] : 0;
+            if (cap == 0) {
+                return dailyCap;
+            }
+            return cap == NO_CAP ? NO_CAP : cap - 1;
+        }
+
+        public int getWeeklyMinimum(int classIndex) {
+            return classIndex < weeklyMinimums.length ? weeklyMinimums[classIndex] : 0;
+        }
+
+        private static int checkMinutes(int minutes, String name) {
+            if (minutes < 0) {
+                throw new IllegalArgumentException(name + " cannot be negative: " + minutes);
+            }
+            return minutes;
+        }
+
+        private static int[] withValue(int[] values, int index, int value) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Class index cannot be negative: " + index);
+            }
+            int[] copy = Arrays.copyOf(values, Math.max(values.length, index + 1));
+            copy[index] = value;
+            return copy;
+        }
+    }
+
+    /** Whole-minute allocation for one student, with the rules that could not be met. */
+    public static final class Allocation {
+        private final ScheduleCalculator.ScheduleResult result;
+        private final int[] minutes;
+        private final int[] weeklyMinutes;
+        private final int[] shortfall;
+        private final int[] unallocated;
+
+        private Allocation(ScheduleCalculator.ScheduleResult result, int[] minutes, int[] weeklyMinutes,
+                           int[] shortfall, int[] unallocated) {
+            this.result = result;
+            this.minutes = minutes;
+            this.weeklyMinutes = weeklyMinutes;
+            this.shortfall = shortfall;
+            this.unallocated = unallocated;
+        }
+
+        /** The allocation as a schedule result, for the existing tables and writers. */
+        public ScheduleCalculator.ScheduleResult getResult() {
+            return result;
+        }
+
+        public int getMinutes(int classIndex, int day) {
+            return minutes[classIndex * unallocated.length + day];
+        }
+
+        public int getWeeklyMinutes(int classIndex) {
+            return weeklyMinutes[classIndex];
+        }
+
+        /** Minutes by which the class's weekly minimum could not be met. */
+        public int getShortfall(int classIndex) {
+            return shortfall[classIndex];
+        }
+
+        /** Minutes of the day left unused because every class was at its cap or below the minimum block. */
+        public int getUnallocated(int day) {
+            return unallocated[day];
+        }
+    }
+
+    public static Allocation allocate(ScheduleData schedule, Rules rules) {
+        ScheduleCalculator.ScheduleResult proportional = ScheduleCalculator.calculate(schedule);
+        return new Solver(proportional, schedule, rules != null ? rules : Rules.DEFAULTS).solve();
+    }
+
+    public static List<Allocation> allocateAll(Collection<ScheduleData> schedules, Rules rules) {
+        if (schedules == null || schedules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Allocation> allocations = new ArrayList<>(schedules.size());
+        for (ScheduleData schedule : schedules) {
+            allocations.add(allocate(schedule, rules));
+        }
+        return Collections.unmodifiableList(allocations);
+    }
+
+    private static final class Solver {
+        private final ScheduleCalculator.ScheduleResult proportional;
+        private final int classCount;
+        private final int dayCount;
+        private final int block;
+        private final double[] priorities;
+        private final int[] caps;
+        private final int[] weeklyMinimums;
+        private final int[] available;
+        private final int[] reserved;
+        private final int[] minutes;
+        private final int[] unallocated;
+
+        // Scratch space for one day.
+        private final boolean[] active;
+        private final double[] shares;
+        private final double[] breakpoints;
+
+        Solver(ScheduleCalculator.ScheduleResult proportional, ScheduleData schedule, Rules rules) {
+            this.proportional = proportional;
+            this.classCount = proportional.getClassCount();
+            this.dayCount = proportional.getDayCount();
+            this.block = rules.getMinimumBlock();
+            this.priorities = new double[classCount];
+            this.caps = new int[classCount];
+            this.weeklyMinimums = new int[classCount];
+            for (int c = 0; c < classCount; c++) {
+                priorities[c] = proportional.getPriority(c);
+                caps[c] = rules.getDailyCap(c);
+                weeklyMinimums[c] = rules.getWeeklyMinimum(c);
+            }
+            this.available = new int[dayCount];
+            int days = schedule == null ? 0 : Math.min(dayCount, schedule.getDayCount());
+            for (int day = 0; day < days; day++) {
+                available[day] = (int) Math.floor(schedule.getMinutes(day));
+            }
+            this.reserved = new int[classCount * dayCount];
+            this.minutes = new int[classCount * dayCount];
+            this.unallocated = new int[dayCount];
+            this.active = new boolean[classCount];
+            this.shares = new double[classCount];
+            this.breakpoints = new double[classCount * 2];
+        }
+
+        Allocation solve() {
+            shareAllDays();
+            int[] weekly = weeklyTotals();
+            if (reserveWeeklyMinimums(weekly)) {
+                shareAllDays();
+                weekly = weeklyTotals();
+            }
+            int[] shortfall = new int[classCount];
+            for (int c = 0; c < classCount; c++) {
+                shortfall[c] = Math.max(0, weeklyMinimums[c] - weekly[c]);
+            }
+
+            double[] matrix = new double[minutes.length];
+            for (int i = 0; i < minutes.length; i++) {
+                matrix[i] = minutes[i];
+            }
+            String[] names = new String[classCount];
+            double[] ratios = new double[classCount];
+            ClassEntry[] classes = new ClassEntry[classCount];
+            for (int c = 0; c < classCount; c++) {
+                names[c] = proportional.getClassName(c);
+                ratios[c] = proportional.getRatio(c);
+                classes[c] = proportional.getClassEntry(c);
+            }
+            ScheduleCalculator.ScheduleResult result = new ScheduleCalculator.ScheduleResult(
+                    classes, names, priorities.clone(), ratios, matrix, dayCount, proportional.getTotalMinutes(),
+                    proportional.getProfile());
+            return new Allocation(result, minutes, weekly, shortfall, unallocated);
+        }
+
+        private void shareAllDays() {
+            for (int day = 0; day < dayCount; day++) {
+                shareDay(day);
+            }
+        }
+
+        private int[] weeklyTotals() {
+            int[] weekly = new int[classCount];
+            for (int c = 0; c < classCount; c++) {
+                int offset = c * dayCount;
+                for (int day = 0; day < dayCount; day++) {
+                    weekly[c] += minutes[offset + day];
+                }
+            }
+            return weekly;
+        }
+
+        private void shareDay(int day) {
+            int budget = available[day];
+            for (int c = 0; c < classCount; c++) {
+                active[c] = reserved[c * dayCount + day] > 0 || (caps[c] >= block && priorities[c] > 0.0);
+            }
+            while (true) {
+                waterFill(day, budget);
+                // Drop the smallest share that is shorter than a block, then share the day again.
+                int drop = -1;
+                for (int c = 0; c < classCount; c++) {
+                    if (active[c] && reserved[c * dayCount + day] == 0 && shares[c] < block
+                            && (drop < 0 || shares[c] < shares[drop])) {
+                        drop = c;
+                    }
+                }
+                if (drop < 0) {
+                    break;
+                }
+                active[drop] = false;
+            }
+            round(day, budget);
+        }
+
+        // Sets shares[c] = clamp(level * priority, reserved, cap) for active classes so they sum to the budget.
+        private void waterFill(int day, int budget) {
+            double floor = 0.0;
+            double ceiling = 0.0;
+            int count = 0;
+            for (int c = 0; c < classCount; c++) {
+                if (!active[c]) {
+                    continue;
+                }
+                int low = reserved[c * dayCount + day];
+                floor += low;
+                ceiling += caps[c];
+                if (priorities[c] > 0.0) {
+                    breakpoints[count++] = low / priorities[c];
+                    if (caps[c] != NO_CAP) {
+                        breakpoints[count++] = caps[c] / priorities[c];
+                    }
+                }
+            }
+            if (budget <= floor || budget >= ceiling) {
+                boolean atCap = budget >= ceiling;
+                for (int c = 0; c < classCount; c++) {
+                    shares[c] = !active[c] ? 0.0 : atCap ? caps[c] : reserved[c * dayCount + day];
+                }
+                return;
+            }
+            Arrays.sort(breakpoints, 0, count);
+            double previousLevel = 0.0;
+            double previousSum = floor;
+            double level = Double.NaN;
+            for (int i = 0; i < count && Double.isNaN(level); i++) {
+                double sum = sharedMinutes(day, breakpoints[i]);
+                if (sum >= budget) {
+                    level = sum == previousSum
+                            ? breakpoints[i]
+                            : previousLevel + (budget - previousSum) * (breakpoints[i] - previousLevel) / (sum - previousSum);
+                }
+                previousLevel = breakpoints[i];
+                previousSum = sum;
+            }
+            if (Double.isNaN(level)) {
+                // Past the last breakpoint only uncapped classes grow.
+                double slope = 0.0;
+                for (int c = 0; c < classCount; c++) {
+                    if (active[c] && caps[c] == NO_CAP) {
+                        slope += priorities[c];
+                    }
+                }
+                level = previousLevel + (budget - previousSum) / slope;
+            }
+            for (int c = 0; c < classCount; c++) {
+                shares[c] = active[c] ? clamp(level * priorities[c], reserved[c * dayCount + day], caps[c]) : 0.0;
+            }
+        }
+
+        private double sharedMinutes(int day, double level) {
+            double sum = 0.0;
+            for (int c = 0; c < classCount; c++) {
+                if (active[c]) {
+                    sum += clamp(level * priorities[c], reserved[c * dayCount + day], caps[c]);
+                }
+            }
+            return sum;
+        }
+
+        // Largest-remainder rounding: floor every share, then hand the spare minutes to the biggest fractions.
+        private void round(int day, int budget) {
+            int used = 0;
+            for (int c = 0; c < classCount; c++) {
+                int whole = active[c] ? (int) Math.min(caps[c], Math.floor(shares[c] + 1e-9)) : 0;
+                minutes[c * dayCount + day] = whole;
+                shares[c] -= whole;
+                used += whole;
+            }
+            while (used < budget) {
+                int best = -1;
+                for (int c = 0; c < classCount; c++) {
+                    if (active[c] && minutes[c * dayCount + day] < caps[c] && shares[c] > 1e-9
+                            && (best < 0 || shares[c] > shares[best])) {
+                        best = c;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                minutes[best * dayCount + day]++;
+                shares[best] = 0.0;
+                used++;
+            }
+            unallocated[day] = budget - used;
+        }
+
+        /**
+         * Turns weekly minimums into per-day reservations. Classes that already meet their minimum keep
+         * that much of their first-pass time; the others keep all of it and are topped up, highest
+         * priority first, on the days with the most room. Returns false when there is nothing to reserve.
+         */
+        private boolean reserveWeeklyMinimums(int[] weekly) {
+            boolean any = false;
+            int[] dayReserved = new int[dayCount];
+            for (int c = 0; c < classCount; c++) {
+                if (weeklyMinimums[c] > 0 && weekly[c] >= weeklyMinimums[c]) {
+                    keepFirstPass(c, weeklyMinimums[c], dayReserved);
+                    any = true;
+                }
+            }
+            Integer[] order = new Integer[classCount];
+            for (int c = 0; c < classCount; c++) {
+                order[c] = c;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(priorities[b], priorities[a]));
+            // Every short class keeps its first-pass time before any is topped up, so no day is over-reserved.
+            for (int c = 0; c < classCount; c++) {
+                if (weeklyMinimums[c] > 0 && weekly[c] < weeklyMinimums[c]) {
+                    int offset = c * dayCount;
+                    for (int day = 0; day < dayCount; day++) {
+                        reserved[offset + day] = minutes[offset + day];
+                        dayReserved[day] += minutes[offset + day];
+                    }
+                    any = true;
+                }
+            }
+            for (int c : order) {
+                if (weeklyMinimums[c] > 0 && weekly[c] < weeklyMinimums[c]) {
+                    topUp(c, weeklyMinimums[c] - weekly[c], dayReserved);
+                }
+            }
+            return any;
+        }
+
+        private void keepFirstPass(int c, int minimum, int[] dayReserved) {
+            int offset = c * dayCount;
+            int remaining = minimum;
+            while (remaining > 0) {
+                int best = -1;
+                for (int day = 0; day < dayCount; day++) {
+                    if (reserved[offset + day] == 0 && minutes[offset + day] > 0
+                            && (best < 0 || minutes[offset + day] > minutes[offset + best])) {
+                        best = day;
+                    }
+                }
+                if (best < 0) {
+                    return;
+                }
+                int keep = Math.min(minutes[offset + best], Math.max(remaining, block));
+                reserved[offset + best] = keep;
+                dayReserved[best] += keep;
+                remaining -= keep;
+            }
+        }
+
+        private void topUp(int c, int deficit, int[] dayReserved) {
+            int offset = c * dayCount;
+            while (deficit > 0) {
+                int best = -1;
+                int bestRoom = 0;
+                for (int day = 0; day < dayCount; day++) {
+                    int current = reserved[offset + day];
+                    int room = Math.min(caps[c] - current, available[day] - dayReserved[day]);
+                    int needed = current == 0 ? block : 1;
+                    if (room >= needed && room > bestRoom) {
+                        best = day;
+                        bestRoom = room;
+                    }
+                }
+                if (best < 0) {
+                    return;
+                }
+                int current = reserved[offset + best];
+                int extra = Math.min(deficit, bestRoom);
+                if (current + extra < block) {
+                    extra = block - current;
+                }
+                reserved[offset + best] = current + extra;
+                dayReserved[best] += extra;
+                deficit -= extra;
+            }
+        }
+
+        private static double clamp(double value, int low, int high) {
+            return value < low ? low : value > high ? high : value;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the scheduling core. Run with {@code java ScheduleBenchmark [filter]}; each
+ * benchmark reports throughput, per-operation latency percentiles and allocated bytes per operation.
+ */
+public final class ScheduleBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 500_000_000L;
+    private static final int LATENCY_SAMPLES = 1 << 16;
+    private static final int COHORT_SIZE = 5_000;
+
+    private static final String[] LEVELS = {"HL", "SL"};
+    private static final String[] GRADES = {"1", "2", "3", "4", "5", "6", "7"};
+    private static final String[] TESTS = {"No", "Yes"};
+    private static final String[] DIFFICULTIES = {"Very Easy", "Easy", "Average", "Hard", "Very Hard"};
+
+    private static volatile long sink;
+
+    private ScheduleBenchmark() {
+    }
+
+    private interface Operation {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        Random random = new Random(20251002L);
+
+        ScheduleData student = randomSchedule(random);
+        String[][] classValues = student.getClassValues();
+        double[] minutesPerDay = student.getMinutesPerDay();
+        ScheduleCalculator.ScheduleResult result = ScheduleCalculator.calculate(student);
+
+        List<ScheduleData> cohort = new ArrayList<>(COHORT_SIZE);
+        for (int i = 0; i < COHORT_SIZE; i++) {
+            cohort.add(randomSchedule(random));
+        }
+
+        System.out.printf(Locale.US, "%-28s %14s %12s %12s %12s %14s%n",
+                "benchmark", "ops/s", "avg ns/op", "p50 ns", "p99 ns", "alloc B/op");
+
+        run(filter, "calculate.single", 1, () -> ScheduleCalculator.calculate(student).getClassCount());
+        run(filter, "calculate.strings", 1, () -> ScheduleCalculator.calculate(classValues, minutesPerDay).getClassCount());
+        run(filter, "calculate.cohort.serial", COHORT_SIZE, () -> ScheduleCalculator.calculateAll(cohort, 1).size());
+        run(filter, "calculate.cohort.parallel", COHORT_SIZE, () -> ScheduleCalculator.calculateAll(cohort).size());
+        ScheduleAllocator.Rules rules = ScheduleAllocator.Rules.DEFAULTS
+                .withMinimumBlock(20).withDailyCap(90).withWeeklyMinimum(0, 150);
+        run(filter, "allocate.single", 1, () -> ScheduleAllocator.allocate(student, rules).getMinutes(0, 0));
+        run(filter, "allocate.cohort", COHORT_SIZE, () -> ScheduleAllocator.allocateAll(cohort, rules).size());
+        run(filter, "data.construct", 1, () -> new ScheduleData(classValues, minutesPerDay).getClassCount());
+        run(filter, "data.getters", 1, () -> {
+            long hash = 0;
+            for (int i = 0; i < student.getClassCount(); i++) {
+                hash += student.getClassEntry(i).getCurrentGrade();
+            }
+            for (int day = 0; day < student.getDayCount(); day++) {
+                hash += (long) student.getMinutes(day);
+            }
+            return hash;
+        });
+        run(filter, "data.legacyGetters", 1, () -> student.getClassValues().length + student.getMinutesPerDay().length);
+        run(filter, "data.withClass", 1, () -> student.withClass(2, ClassEntry.EMPTY).getClassCount());
+        IncrementalSchedule incremental = new IncrementalSchedule(student);
+        ClassEntry[] edits = {student.getClassEntry(2), student.getClassEntry(2).withDifficulty(ClassEntry.Difficulty.VERY_HARD)};
+        int[] edit = new int[1];
+        run(filter, "incremental.setClass", 1, () -> incremental.setClass(2, edits[edit[0]++ & 1]).size());
+        run(filter, "incremental.setMinutes", 1, () -> incremental.setMinutes(3, 60 + (edit[0]++ & 1)).size());
+        ScheduleTimetable.Availability evenings = ScheduleTimetable.Availability.daily(result.getDayCount(), 16 * 60, 22 * 60)
+                .withBusy(2, 18 * 60, 19 * 60);
+        run(filter, "timetable.place", 1, () -> ScheduleTimetable.place(result, evenings).getFreeMinutes(0));
+        ScheduleTimetable timetable = ScheduleTimetable.place(result, evenings);
+        run(filter, "timetable.setMinutes", 1, () -> timetable.setMinutes(1, 2, 30 + (edit[0]++ & 1) * 15));
+        run(filter, "result.tableData", 1, () -> result.getTableData().length);
+        run(filter, "result.formatCells", 1, () -> {
+            long hash = 0;
+            for (int row = 0; row < result.getClassCount(); row++) {
+                for (int column = 0; column <= result.getDayCount(); column++) {
+                    hash += result.getValueAt(row, column).hashCode();
+                }
+            }
+            return hash;
+        });
+    }
+
+    private static void run(String filter, String name, int operationsPerCall, Operation operation) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measure(operation, new long[LATENCY_SAMPLES]);
+        }
+
+        long[] latencies = new long[LATENCY_SAMPLES];
+        long calls = 0;
+        long nanos = 0;
+        long allocated = 0;
+        int samples = 0;
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long[] iteration = new long[LATENCY_SAMPLES];
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            int iterationCalls = measure(operation, iteration);
+            nanos += System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            calls += iterationCalls;
+            int copy = Math.min(iterationCalls, LATENCY_SAMPLES - samples);
+            if (copy > 0) {
+                System.arraycopy(iteration, 0, latencies, samples, copy);
+                samples += copy;
+            }
+        }
+
+        Arrays.sort(latencies, 0, samples);
+        long operations = calls * operationsPerCall;
+        System.out.printf(Locale.US, "%-28s %14.0f %12.1f %12d %12d %14.1f%n",
+                name,
+                operations * 1_000_000_000.0 / nanos,
+                (double) nanos / operations,
+                percentile(latencies, samples, 0.50) / operationsPerCall,
+                percentile(latencies, samples, 0.99) / operationsPerCall,
+                (double) allocated / operations);
+    }
+
+    private static int measure(Operation operation, long[] latencies) {
+        long end = System.nanoTime() + ITERATION_NANOS;
+        long accumulator = 0;
+        int calls = 0;
+        long now;
+        do {
+            long start = System.nanoTime();
+            accumulator += operation.run();
+            now = System.nanoTime();
+            if (calls < latencies.length) {
+                latencies[calls] = now - start;
+            }
+            calls++;
+        } while (now < end);
+        sink = accumulator;
+        return calls;
+    }
+
+    private static long percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        return sorted[Math.min(count - 1, (int) (count * fraction))];
+    }
+
+    // Sums allocation across all live threads so fork/join workers are counted for the cohort runs.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static ScheduleData randomSchedule(Random random) {
+        String[][] values = new String[ScheduleData.DEFAULT_CLASS_COUNT][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new String[]{
+                    "Subject " + (i + 1),
+                    LEVELS[random.nextInt(LEVELS.length)],
+                    GRADES[random.nextInt(GRADES.length)],
+                    GRADES[random.nextInt(GRADES.length)],
+                    TESTS[random.nextInt(TESTS.length)],
+                    DIFFICULTIES[random.nextInt(DIFFICULTIES.length)]
+            };
+        }
+        double[] minutes = new double[ScheduleData.DEFAULT_DAY_COUNT];
+        for (int day = 0; day < minutes.length; day++) {
+            minutes[day] = 30 + random.nextInt(300);
+        }
+        return new ScheduleData(values, minutes);
+    }
+}
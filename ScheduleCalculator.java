@@ -1,5 +1,13 @@
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class ScheduleCalculator {
 
@@ -7,185 +15,385 @@ public final class ScheduleCalculator {
             "Class", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"
     };
 
-    private static final int CLASS_COUNT = 6;
-    private static final int DAY_COUNT = 7;
+    private static final int DAYS_PER_WEEK = 7;
 
-    private static final double BASE_PRIORITY = 1.0;
-    private static final double HL_WEIGHT = 0.7;
-    private static final double SL_WEIGHT = 0.2;
-    private static final double TEST_WEIGHT = 0.8;
-    private static final double UNKNOWN_GRADE_WEIGHT = 0.25;
-    private static final double MAINTAIN_GRADE_WEIGHT = 0.15;
-    private static final double GRADE_GAP_MULTIPLIER = 0.35;
+    private static final int BATCH_THRESHOLD = 64;
 
-    private static final double DIFFICULTY_VERY_HARD = 1.0;
-    private static final double DIFFICULTY_HARD = 0.7;
-    private static final double DIFFICULTY_AVERAGE = 0.45;
-    private static final double DIFFICULTY_EASY = 0.25;
-    private static final double DIFFICULTY_DEFAULT = 0.1;
+    private static final String[] DEFAULT_CLASS_NAMES = {
+            "Class 1", "Class 2", "Class 3", "Class 4", "Class 5", "Class 6"
+    };
 
     private ScheduleCalculator() {
     }
 
+    public static String[] columnNames(int dayCount) {
+        if (dayCount == DAYS_PER_WEEK) {
+            return COLUMN_NAMES;
+        }
+        String[] names = new String[dayCount + 1];
+        names[0] = COLUMN_NAMES[0];
+        for (int day = 0; day < dayCount; day++) {
+            names[day + 1] = dayName(day, dayCount);
+        }
+        return names;
+    }
+
+    private static String dayName(int day, int dayCount) {
+        String weekday = COLUMN_NAMES[day % DAYS_PER_WEEK + 1];
+        if (dayCount <= DAYS_PER_WEEK) {
+            return weekday;
+        }
+        return "Week " + (day / DAYS_PER_WEEK + 1) + " " + weekday;
+    }
+
+    public static ScheduleResult calculate(ScheduleData schedule) {
+        return calculate(schedule, WeightProfile.current());
+    }
+
+    public static ScheduleResult calculate(ScheduleData schedule, WeightProfile profile) {
+        if (schedule == null) {
+            return compute(new ClassEntry[0], null, profile);
+        }
+        return compute(schedule.classArray(), schedule.minutesArray(), profile);
+    }
+
+    public static List<ScheduleResult> calculateAll(Collection<ScheduleData> schedules) {
+        return calculateAll(schedules, 0);
+    }
+
+    public static List<ScheduleResult> calculateAll(Stream<ScheduleData> schedules, int parallelism) {
+        if (schedules == null) {
+            return Collections.emptyList();
+        }
+        return calculateAll(schedules.collect(Collectors.toList()), parallelism);
+    }
+
+    /**
+     * Calculates every schedule in the collection across a fork/join pool. Results are returned in
+     * the iteration order of the input. A parallelism of zero or less uses the common pool, and a
+     * parallelism of one calculates on the calling thread only.
+     */
+    public static List<ScheduleResult> calculateAll(Collection<ScheduleData> schedules, int parallelism) {
+        if (schedules == null || schedules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ScheduleData[] inputs = schedules.toArray(new ScheduleData[0]);
+        ScheduleResult[] results = new ScheduleResult[inputs.length];
+
+        // Read once so every result in the batch is scored with the same profile.
+        WeightProfile profile = WeightProfile.current();
+
+        if (parallelism == 1 || inputs.length <= BATCH_THRESHOLD) {
+            // BatchTask would fork larger inputs into the common pool even when called directly.
+            for (int i = 0; i < inputs.length; i++) {
+                results[i] = calculate(inputs[i], profile);
+            }
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+
+        BatchTask task = new BatchTask(inputs, results, 0, inputs.length, profile);
+        if (parallelism <= 0) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
     public static ScheduleResult calculate(String[][] classValues, double[] minutesPerDay) {
         String[][] values = classValues != null ? classValues : new String[0][];
+        ClassEntry[] classes = new ClassEntry[values.length];
+        for (int i = 0; i < values.length; i++) {
+            classes[i] = values[i] != null ? ClassEntry.parse(values[i]) : ClassEntry.EMPTY;
+        }
+        return compute(classes, minutesPerDay, WeightProfile.current());
+    }
+
+    public static ScheduleResult calculate(ClassEntry[] classEntries, double[] minutesPerDay) {
+        return compute(classEntries != null ? classEntries.clone() : new ClassEntry[0], minutesPerDay, WeightProfile.current());
+    }
+
+    // The result keeps a reference to the classes array, so callers must pass one that is not modified later.
+    // The profile is read once by the caller, so a profile swapped in mid-calculation is not mixed in.
+    private static ScheduleResult compute(ClassEntry[] classes, double[] minutesPerDay, WeightProfile profile) {
+        long start = ScheduleMetrics.start();
+        ScheduleEvents.Calculation event = new ScheduleEvents.Calculation();
+        event.begin();
         double[] minutes = minutesPerDay != null ? minutesPerDay : new double[0];
 
-        double[] priorities = new double[CLASS_COUNT];
+        int classCount = Math.max(classes.length, ScheduleData.DEFAULT_CLASS_COUNT);
+        int dayCount = Math.max(minutes.length, ScheduleData.DEFAULT_DAY_COUNT);
+
+        double[] priorities = new double[classCount];
         double totalPriority = 0.0;
 
-        for (int i = 0; i < CLASS_COUNT; i++) {
-            String[] row = i < values.length && values[i] != null ? values[i] : new String[0];
-            double priority = computePriority(row);
+        for (int i = 0; i < classCount; i++) {
+            double priority = profile.score(entryAt(classes, i));
             priorities[i] = priority;
             totalPriority += priority;
         }
 
         if (totalPriority == 0.0) {
-            Arrays.fill(priorities, BASE_PRIORITY);
-            totalPriority = BASE_PRIORITY * priorities.length;
+            Arrays.fill(priorities, profile.getBase());
+            totalPriority = profile.getBase() * priorities.length;
         }
 
-        double[] ratios = new double[CLASS_COUNT];
-        for (int i = 0; i < CLASS_COUNT; i++) {
+        double[] ratios = new double[classCount];
+        for (int i = 0; i < classCount; i++) {
             ratios[i] = priorities[i] / totalPriority;
         }
 
-        Object[][] tableData = new Object[CLASS_COUNT][COLUMN_NAMES.length];
-        for (int i = 0; i < CLASS_COUNT; i++) {
-            String[] row = i < values.length && values[i] != null ? values[i] : new String[0];
-            String className = getValue(row, 0);
-            if (className == null || className.trim().isEmpty()) {
-                className = "Class " + (i + 1);
+        String[] classNames = new String[classCount];
+        double[] minutesMatrix = new double[classCount * dayCount];
+        for (int i = 0; i < classCount; i++) {
+            String className = entryAt(classes, i).getName();
+            if (className.trim().isEmpty()) {
+                className = defaultClassName(i);
             }
-            tableData[i][0] = className;
-            for (int day = 0; day < DAY_COUNT; day++) {
-                double minutesForDay = (day < minutes.length ? minutes[day] : 0.0) * ratios[i];
-                tableData[i][day + 1] = formatMinutes(minutesForDay);
+            classNames[i] = className;
+            int offset = i * dayCount;
+            for (int day = 0; day < dayCount; day++) {
+                minutesMatrix[offset + day] = (day < minutes.length ? minutes[day] : 0.0) * ratios[i];
             }
         }
 
         double totalMinutes = 0.0;
-        for (int day = 0; day < DAY_COUNT; day++) {
-            totalMinutes += day < minutes.length ? minutes[day] : 0.0;
+        for (int day = 0; day < minutes.length; day++) {
+            totalMinutes += minutes[day];
         }
-        double totalHours = totalMinutes / 60.0;
-        String summaryText = String.format(Locale.US, "Allocate %.1f total study hours each week.", totalHours);
 
-        return new ScheduleResult(tableData, summaryText);
+        ScheduleResult result = new ScheduleResult(
+                classes, classNames, priorities, ratios, minutesMatrix, dayCount, totalMinutes, profile);
+        ScheduleMetrics.CALCULATE.stop(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.classCount = classCount;
+            event.dayCount = dayCount;
+            event.commit();
+        }
+        return result;
     }
 
-    private static double computePriority(String[] row) {
-        double priority = BASE_PRIORITY;
+    private static ClassEntry entryAt(ClassEntry[] classes, int index) {
+        ClassEntry entry = index < classes.length ? classes[index] : null;
+        return entry != null ? entry : ClassEntry.EMPTY;
+    }
 
-        String level = getValue(row, 1);
-        if ("HL".equalsIgnoreCase(level)) {
-            priority += HL_WEIGHT;
-        } else if (!level.isEmpty()) {
-            priority += SL_WEIGHT;
-        }
+    public static PriorityBreakdown explainPriority(ClassEntry entry, WeightProfile profile) {
+        ClassEntry value = entry != null ? entry : ClassEntry.EMPTY;
+        return new PriorityBreakdown(
+                profile.getBase(),
+                profile.getLevelWeight(value.getLevel()),
+                profile.getGradeWeight(value.getCurrentGrade(), value.getTargetGrade()),
+                value.isTestUpcoming() ? profile.getTestWeight() : 0.0,
+                profile.getDifficultyWeight(value.getDifficulty()),
+                profile.score(value));
+    }
 
-        priority += gradeWeight(getValue(row, 2), getValue(row, 3));
+    private static String formatMinutes(double minutes) {
+        return DurationLabels.current().label(minutes);
+    }
 
-        if ("Yes".equalsIgnoreCase(getValue(row, 4))) {
-            priority += TEST_WEIGHT;
-        }
+    static String defaultClassName(int index) {
+        return index < DEFAULT_CLASS_NAMES.length ? DEFAULT_CLASS_NAMES[index] : "Class " + (index + 1);
+    }
 
-        priority += difficultyWeight(getValue(row, 5));
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        return Math.max(priority, BASE_PRIORITY * 0.25);
-    }
+        private final ScheduleData[] inputs;
+        private final ScheduleResult[] results;
+        private final int from;
+        private final int to;
+        private final WeightProfile profile;
 
-    private static double gradeWeight(String currentGrade, String targetGrade) {
-        try {
-            int current = Integer.parseInt(currentGrade);
-            int target = Integer.parseInt(targetGrade);
-            int gap = target - current;
-            if (gap > 0) {
-                return Math.min(gap, 3) * GRADE_GAP_MULTIPLIER;
-            }
-            return MAINTAIN_GRADE_WEIGHT;
-        } catch (NumberFormatException ignored) {
-            if ((currentGrade != null && !currentGrade.isEmpty()) || (targetGrade != null && !targetGrade.isEmpty())) {
-                return MAINTAIN_GRADE_WEIGHT;
+        private BatchTask(ScheduleData[] inputs, ScheduleResult[] results, int from, int to, WeightProfile profile) {
+            this.inputs = inputs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.profile = profile;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = calculate(inputs[i], profile);
+                }
+                return;
             }
-            return UNKNOWN_GRADE_WEIGHT;
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(inputs, results, from, middle, profile),
+                    new BatchTask(inputs, results, middle, to, profile));
         }
     }
 
-    private static double difficultyWeight(String difficulty) {
-        if (difficulty == null) {
-            return DIFFICULTY_DEFAULT;
+    /** The weights that make up one class's priority, in the order they are added. */
+    public static final class PriorityBreakdown {
+        private final double base;
+        private final double level;
+        private final double grade;
+        private final double test;
+        private final double difficulty;
+        private final double total;
+
+        private PriorityBreakdown(double base, double level, double grade, double test, double difficulty, double total) {
+            this.base = base;
+            this.level = level;
+            this.grade = grade;
+            this.test = test;
+            this.difficulty = difficulty;
+            this.total = total;
         }
-        if ("Very Hard".equalsIgnoreCase(difficulty)) {
-            return DIFFICULTY_VERY_HARD;
+
+        public double getBase() {
+            return base;
         }
-        if ("Hard".equalsIgnoreCase(difficulty)) {
-            return DIFFICULTY_HARD;
+
+        public double getLevel() {
+            return level;
         }
-        if ("Average".equalsIgnoreCase(difficulty)) {
-            return DIFFICULTY_AVERAGE;
+
+        public double getGrade() {
+            return grade;
         }
-        if ("Easy".equalsIgnoreCase(difficulty)) {
-            return DIFFICULTY_EASY;
+
+        public double getTest() {
+            return test;
         }
-        if ("Very Easy".equalsIgnoreCase(difficulty)) {
-            return DIFFICULTY_DEFAULT;
+
+        public double getDifficulty() {
+            return difficulty;
         }
-        return DIFFICULTY_DEFAULT;
-    }
 
-    private static String getValue(String[] row, int index) {
-        if (row == null || index < 0 || index >= row.length || row[index] == null) {
-            return "";
+        public double getTotal() {
+            return total;
         }
-        return row[index];
     }
 
-    private static String formatMinutes(double minutes) {
-        int totalMinutes = (int) Math.round(Math.max(0.0, minutes));
-        int hours = totalMinutes / 60;
-        int mins = totalMinutes % 60;
-
-        StringBuilder builder = new StringBuilder();
-        if (hours > 0) {
-            builder.append(hours)
-                    .append(" ")
-                    .append(hours == 1 ? "hour" : "hours");
-        }
-        if (mins > 0) {
-            if (builder.length() > 0) {
-                builder.append(" ");
-            }
-            builder.append(mins)
-                    .append(" ")
-                    .append(mins == 1 ? "minute" : "minutes");
+    public static final class ScheduleResult {
+        private final ClassEntry[] classes;
+        private final String[] classNames;
+        private final double[] priorities;
+        private final double[] ratios;
+        private final double[] minutes;
+        private final int dayCount;
+        private final double totalMinutes;
+        private final WeightProfile profile;
+        private String summaryText;
+
+        ScheduleResult(
+                ClassEntry[] classes,
+                String[] classNames,
+                double[] priorities,
+                double[] ratios,
+                double[] minutes,
+                int dayCount,
+                double totalMinutes,
+                WeightProfile profile) {
+            this.classes = classes;
+            this.classNames = classNames;
+            this.priorities = priorities;
+            this.ratios = ratios;
+            this.minutes = minutes;
+            this.dayCount = dayCount;
+            this.totalMinutes = totalMinutes;
+            this.profile = profile;
         }
-        if (builder.length() == 0) {
-            builder.append("0 minutes");
+
+        public int getClassCount() {
+            return classNames.length;
         }
-        return builder.toString();
-    }
 
-    public static final class ScheduleResult {
-        private final Object[][] tableData;
-        private final String summaryText;
+        public int getDayCount() {
+            return dayCount;
+        }
 
-        private ScheduleResult(Object[][] tableData, String summaryText) {
-            this.tableData = tableData;
-            this.summaryText = summaryText;
+        public String getClassName(int classIndex) {
+            return classNames[classIndex];
+        }
+
+        /** The class a row was calculated from; rows added to reach the default count are empty. */
+        public ClassEntry getClassEntry(int classIndex) {
+            return entryAt(classes, classIndex);
+        }
+
+        /** The profile the priorities were scored with. */
+        public WeightProfile getProfile() {
+            return profile;
+        }
+
+        public PriorityBreakdown explainPriority(int classIndex) {
+            return ScheduleCalculator.explainPriority(getClassEntry(classIndex), profile);
+        }
+
+        public double getPriority(int classIndex) {
+            return priorities[classIndex];
+        }
+
+        public double getRatio(int classIndex) {
+            return ratios[classIndex];
+        }
+
+        public double getMinutes(int classIndex, int day) {
+            return minutes[classIndex * dayCount + day];
+        }
+
+        public double getTotalMinutes() {
+            return totalMinutes;
+        }
+
+        /** Row-major minutes matrix: the cell for a class and day is at {@code classIndex * dayCount + day}. */
+        public DoubleBuffer getMinutesView() {
+            return DoubleBuffer.wrap(minutes).asReadOnlyBuffer();
+        }
+
+        public DoubleBuffer getPrioritiesView() {
+            return DoubleBuffer.wrap(priorities).asReadOnlyBuffer();
+        }
+
+        public DoubleBuffer getRatiosView() {
+            return DoubleBuffer.wrap(ratios).asReadOnlyBuffer();
+        }
+
+        public String getFormattedMinutes(int classIndex, int day) {
+            return formatMinutes(getMinutes(classIndex, day));
+        }
+
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                return classNames[row];
+            }
+            return getFormattedMinutes(row, column - 1);
         }
 
         public Object[][] getTableData() {
-            Object[][] copy = new Object[tableData.length][];
-            for (int i = 0; i < tableData.length; i++) {
-                copy[i] = Arrays.copyOf(tableData[i], tableData[i].length);
+            Object[][] tableData = new Object[classNames.length][dayCount + 1];
+            for (int i = 0; i < classNames.length; i++) {
+                for (int column = 0; column <= dayCount; column++) {
+                    tableData[i][column] = getValueAt(i, column);
+                }
             }
-            return copy;
+            return tableData;
         }
 
         public String getSummaryText() {
-            return summaryText;
+            String text = summaryText;
+            if (text == null) {
+                if (dayCount <= DAYS_PER_WEEK) {
+                    text = String.format(Locale.US, "Allocate %.1f total study hours each week.", totalMinutes / 60.0);
+                } else {
+                    text = String.format(Locale.US, "Allocate %.1f total study hours over %d days.", totalMinutes / 60.0, dayCount);
+                }
+                summaryText = text;
+            }
+            return text;
         }
     }
 }
\ No newline at end of file
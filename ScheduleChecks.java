@@ -0,0 +1,452 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Behaviour checks for the scheduling core and the storage layers. Run with
+ * {@code java ScheduleChecks [filter]}; each check prints PASS, FAIL or SKIP and the run exits with
+ * status 1 when any check failed.
+ *
+ * <p>The database check needs a JDBC driver on the class path and its URL in
+ * {@code -Dschedule.check.jdbc} (credentials in {@code .user} and {@code .password}), for example
+ * {@code java -cp .:h2.jar -Dschedule.check.jdbc=jdbc:h2:mem:checks ScheduleChecks}; without it the
+ * check is skipped.
+ */
+public final class ScheduleChecks {
+
+    static final String JDBC_URL_PROPERTY = "schedule.check.jdbc";
+
+    // Output of the original calculator for the same inputs, before weights moved into WeightProfile.
+    private static final String[] BASELINE_TABLES = {
+        "[[Maths, 18 minutes, 26 minutes, 13 minutes, 35 minutes, 9 minutes, 0 minutes, 0 minutes], "
+                + "[English, 9 minutes, 13 minutes, 7 minutes, 18 minutes, 4 minutes, 0 minutes, 0 minutes], "
+                + "[Physics, 15 minutes, 23 minutes, 11 minutes, 31 minutes, 8 minutes, 0 minutes, 0 minutes], "
+                + "[Class 4, 6 minutes, 9 minutes, 5 minutes, 12 minutes, 3 minutes, 0 minutes, 0 minutes], "
+                + "[Class 5, 6 minutes, 9 minutes, 5 minutes, 12 minutes, 3 minutes, 0 minutes, 0 minutes], "
+                + "[Class 6, 6 minutes, 9 minutes, 5 minutes, 12 minutes, 3 minutes, 0 minutes, 0 minutes]]",
+        "[[History, 7 minutes, 0 minutes, 5 minutes, 0 minutes, 0 minutes, 0 minutes, 0 minutes], "
+                + "[Biology, 13 minutes, 0 minutes, 8 minutes, 0 minutes, 0 minutes, 0 minutes, 0 minutes], "
+                + "[Class 3, 6 minutes, 0 minutes, 4 minutes, 0 minutes, 0 minutes, 0 minutes, 0 minutes], "
+                + "[Class 4, 6 minutes, 0 minutes, 4 minutes, 0 minutes, 0 minutes, 0 minutes, 0 minutes], "
+                + "[Class 5, 6 minutes, 0 minutes, 4 minutes, 0 minutes, 0 minutes, 0 minutes, 0 minutes], "
+                + "[Class 6, 6 minutes, 0 minutes, 4 minutes, 0 minutes, 0 minutes, 0 minutes, 0 minutes]]",
+    };
+    private static final String[] BASELINE_SUMMARIES = {
+        "Allocate 5.8 total study hours each week.",
+        "Allocate 1.3 total study hours each week.",
+    };
+    // CRC32 of the original calculator's output for the random inputs in sweepChecksum.
+    private static final long BASELINE_SWEEP_CRC = 0x237CC099L;
+
+    private static final String[] LEVELS = {"HL", "SL", "", "hl"};
+    private static final String[] GRADES = {"1", "2", "3", "4", "5", "6", "7", "", "x"};
+    private static final String[] TESTS = {"Yes", "No", ""};
+    private static final String[] DIFFICULTIES = {"Very Easy", "Easy", "Average", "Hard", "Very Hard", "", "weird"};
+
+    private static int failed;
+
+    private ScheduleChecks() {
+    }
+
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private static final class Skipped extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private Skipped(String reason) {
+            super(reason);
+        }
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        run(filter, "calculator.baseline", ScheduleChecks::calculatorBaseline);
+        run(filter, "calculator.sweep", ScheduleChecks::calculatorSweep);
+        run(filter, "codec.roundTrip", ScheduleChecks::codecRoundTrip);
+        run(filter, "records.json", ScheduleChecks::recordJson);
+        run(filter, "store.roundTrip", ScheduleChecks::storeRoundTrip);
+        run(filter, "store.truncatedTail", ScheduleChecks::storeTruncatedTail);
+        run(filter, "journal.roundTrip", ScheduleChecks::journalRoundTrip);
+        run(filter, "journal.truncatedTail", ScheduleChecks::journalTruncatedTail);
+        run(filter, "jdbc.roundTrip", ScheduleChecks::jdbcRoundTrip);
+        run(filter, "writeBehind.coalesce", ScheduleChecks::writeBehindCoalesce);
+        run(filter, "writeBehind.failingStore", ScheduleChecks::writeBehindFailingStore);
+        if (failed > 0) {
+            System.out.println(failed + " check(s) failed");
+            System.exit(1);
+        }
+    }
+
+    private static void run(String filter, String name, Check check) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        long start = System.nanoTime();
+        String status;
+        String detail = "";
+        try {
+            check.run();
+            status = "PASS";
+        } catch (Skipped ex) {
+            status = "SKIP";
+            detail = ex.getMessage();
+        } catch (Exception | AssertionError ex) {
+            failed++;
+            status = "FAIL";
+            detail = ex.toString();
+        }
+        System.out.printf(Locale.US, "%-4s %-26s %8.1f ms  %s%n", status, name, (System.nanoTime() - start) / 1e6, detail);
+    }
+
+    private static void calculatorBaseline() {
+        String[][][] classValues = {
+            {{"Maths", "HL", "4", "6", "Yes", "Hard"}, {"English", "SL", "5", "6", "No", "Average"},
+                {"Physics", "HL", "3", "5", "No", "Very Hard"}},
+            {{"History", "SL", "", "7", "", "Easy"}, {"Biology", "hl", "6", "6", "Yes", "weird"}},
+        };
+        double[][] minutes = {{60, 90, 45, 120, 30, 0, 0}, {45.5, 0, 30}};
+        for (int i = 0; i < classValues.length; i++) {
+            ScheduleCalculator.ScheduleResult result = ScheduleCalculator.calculate(classValues[i], minutes[i]);
+            expectEquals(BASELINE_TABLES[i], Arrays.deepToString(result.getTableData()), "table " + i);
+            expectEquals(BASELINE_SUMMARIES[i], result.getSummaryText(), "summary " + i);
+            ScheduleCalculator.ScheduleResult withDefaults =
+                    ScheduleCalculator.calculate(new ScheduleData(classValues[i], minutes[i]), WeightProfile.DEFAULT);
+            expectEquals(BASELINE_TABLES[i], Arrays.deepToString(withDefaults.getTableData()), "default profile table " + i);
+        }
+    }
+
+    private static void calculatorSweep() {
+        expectEquals(Long.toHexString(BASELINE_SWEEP_CRC), Long.toHexString(sweepChecksum()), "sweep checksum");
+    }
+
+    // Calculates random schedules, including blank and malformed fields, and checksums the output.
+    private static long sweepChecksum() {
+        Random random = new Random(42);
+        CRC32 crc = new CRC32();
+        for (int s = 0; s < 300; s++) {
+            String[][] classValues = new String[random.nextInt(7)][];
+            for (int i = 0; i < classValues.length; i++) {
+                classValues[i] = new String[] {
+                    random.nextBoolean() ? "C" + i : "",
+                    LEVELS[random.nextInt(LEVELS.length)],
+                    GRADES[random.nextInt(GRADES.length)],
+                    GRADES[random.nextInt(GRADES.length)],
+                    TESTS[random.nextInt(TESTS.length)],
+                    DIFFICULTIES[random.nextInt(DIFFICULTIES.length)]};
+            }
+            double[] minutes = new double[random.nextInt(8)];
+            for (int day = 0; day < minutes.length; day++) {
+                minutes[day] = random.nextInt(600) + random.nextDouble();
+            }
+            ScheduleCalculator.ScheduleResult result = ScheduleCalculator.calculate(classValues, minutes);
+            String line = Arrays.deepToString(result.getTableData()) + result.getSummaryText() + "\n";
+            crc.update(line.getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+
+    private static void codecRoundTrip() {
+        ScheduleData schedule = sample("Math\u00e9matiques \u6570\u5b66 \ud83d\udcda", 52.25);
+        ScheduleData decoded = ScheduleCodec.readSchedule(ScheduleCodec.encodeSchedule(schedule));
+        expectEquals(schedule, decoded, "decoded schedule");
+        try {
+            ScheduleCodec.utf8(repeat('x', 0x10000));
+            throw new AssertionError("an over-long string was encoded");
+        } catch (IllegalArgumentException expected) {
+            // Lengths are written as unsigned shorts.
+        }
+    }
+
+    private static void recordJson() {
+        ScheduleData schedule = new ScheduleData(sample("Physics", 0).getClassEntries().toArray(new ClassEntry[0]),
+                new double[] {30, 12.345678901234567, 0.01, 1e-7, 90.05, 0, 1e300});
+        StringBuilder out = new StringBuilder();
+        ScheduleRecordCodec.appendRecordJson(out, "student \"7\"", schedule);
+        ScheduleRecordCodec.Record record = ScheduleRecordCodec.parseJson(out.toString());
+        expectEquals("student \"7\"", record.getId(), "record id");
+        expectEquals(schedule, record.getSchedule(), "record schedule");
+    }
+
+    private static void storeRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("schedule-checks");
+        try {
+            Path file = dir.resolve("store.bin");
+            Map<String, ScheduleData> batch = new LinkedHashMap<>();
+            batch.put("alice", sample("Alice", 30));
+            batch.put("bob", sample("Bob", 45));
+            try (FileScheduleStore store = FileScheduleStore.open(file)) {
+                store.save("alice", sample("Alice", 10));
+                store.saveAll(batch);
+            }
+            try (FileScheduleStore store = FileScheduleStore.open(file)) {
+                expectEquals("bob", store.getLatestProfileId(), "latest profile");
+                expectEquals(batch.get("bob"), store.loadLatest(), "latest schedule");
+                expectEquals(batch.get("alice"), store.load("alice"), "alice");
+                expectEquals(null, store.load("carol"), "unknown profile");
+                store.compact();
+                expectEquals(2, store.getProfileCount(), "profiles after compact");
+            }
+            try (FileScheduleStore store = FileScheduleStore.open(file)) {
+                expectEquals(batch.get("alice"), store.load("alice"), "alice after compact");
+                expectEquals(batch.get("bob"), store.loadLatest(), "latest after compact");
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void storeTruncatedTail() throws IOException {
+        Path dir = Files.createTempDirectory("schedule-checks");
+        try {
+            Path file = dir.resolve("store.bin");
+            try (FileScheduleStore store = FileScheduleStore.open(file)) {
+                store.save("alice", sample("Alice", 30));
+                store.save("bob", sample("Bob", 45));
+            }
+            truncate(file, 3);
+            try (FileScheduleStore store = FileScheduleStore.open(file)) {
+                expectEquals("alice", store.getLatestProfileId(), "latest after a torn save");
+                expectEquals(sample("Alice", 30), store.load("alice"), "alice");
+                expectEquals(null, store.load("bob"), "torn profile");
+                store.save("carol", sample("Carol", 60));
+            }
+            appendGarbage(file);
+            try (FileScheduleStore store = FileScheduleStore.open(file)) {
+                expectEquals("carol", store.getLatestProfileId(), "latest after trailing garbage");
+                expectEquals(sample("Alice", 30), store.load("alice"), "alice after trailing garbage");
+                expectEquals(2, store.getProfileCount(), "profiles");
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void journalRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("schedule-checks");
+        try {
+            Path file = dir.resolve("journal.bin");
+            ScheduleData first = sample("Alice", 30);
+            ScheduleData second = first.withMinutes(2, 75).withClass(1, first.getClassEntry(1).withName("Chemistry"));
+            try (ScheduleJournal journal = ScheduleJournal.open(file, 4)) {
+                for (int i = 0; i < 6; i++) {
+                    journal.save("alice", first.withMinutes(0, i));
+                }
+                journal.save("alice", second);
+                journal.save("bob", sample("Bob", 45));
+            }
+            try (ScheduleJournal journal = ScheduleJournal.open(file, 4)) {
+                expectEquals(second, journal.load("alice"), "alice");
+                expectEquals(sample("Bob", 45), journal.load("bob"), "bob");
+                expectEquals(7, journal.getRevisions("alice").size(), "alice revisions");
+                long third = journal.getRevisions("alice").get(2).getNumber();
+                expectEquals(first.withMinutes(0, 2), journal.loadRevision("alice", third), "third revision");
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void journalTruncatedTail() throws IOException {
+        Path dir = Files.createTempDirectory("schedule-checks");
+        try {
+            Path file = dir.resolve("journal.bin");
+            ScheduleData first = sample("Alice", 30);
+            try (ScheduleJournal journal = ScheduleJournal.open(file)) {
+                journal.save("alice", first);
+                journal.save("alice", first.withMinutes(3, 90));
+            }
+            truncate(file, 2);
+            try (ScheduleJournal journal = ScheduleJournal.open(file)) {
+                expectEquals(first, journal.load("alice"), "alice after a torn save");
+                expectEquals(1, journal.getRevisions("alice").size(), "revisions");
+                journal.save("alice", first.withMinutes(4, 15));
+            }
+            try (ScheduleJournal journal = ScheduleJournal.open(file)) {
+                expectEquals(first.withMinutes(4, 15), journal.load("alice"), "alice after saving again");
+                expectEquals(2, journal.getRevisions("alice").size(), "revisions after saving again");
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void jdbcRoundTrip() throws Exception {
+        String url = System.getProperty(JDBC_URL_PROPERTY);
+        if (url == null || url.isEmpty()) {
+            throw new Skipped("set -D" + JDBC_URL_PROPERTY + "=<url> with a driver on the class path");
+        }
+        String user = System.getProperty(JDBC_URL_PROPERTY + ".user", "");
+        String password = System.getProperty(JDBC_URL_PROPERTY + ".password", "");
+        try (JdbcScheduleRepository repository = JdbcScheduleRepository.open(url, user, password)) {
+            repository.createSchema();
+            Map<String, ScheduleData> batch = new LinkedHashMap<>();
+            batch.put("check-alice", sample("Alice", 30.5));
+            batch.put("check-bob", sample("Bob", 45));
+            repository.saveAll(batch);
+            expectEquals(batch.get("check-alice"), repository.load("check-alice"), "alice");
+            expectEquals(batch.get("check-bob"), repository.load("check-bob"), "bob");
+
+            ScheduleData shorter = new ScheduleData(new ClassEntry[] {ClassEntry.EMPTY.withName("Art")}, new double[] {20});
+            repository.save("check-alice", shorter);
+            expectEquals(shorter, repository.load("check-alice"), "alice after a smaller save");
+            expectEquals(null, repository.load("check-carol"), "unknown profile");
+        }
+    }
+
+    private static void writeBehindCoalesce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingRepository repository = new RecordingRepository(release);
+        try (ScheduleWriteBehind writer = ScheduleWriteBehind.forRepository(repository, 16, 8, null)) {
+            writer.submit("alice", sample("Alice", 1));
+            repository.awaitFirstBatch();
+            writer.submit("alice", sample("Alice", 2));
+            writer.submit("alice", sample("Alice", 3));
+            writer.submit("bob", sample("Bob", 1));
+            expectEquals(2, writer.getPendingCount(), "pending while the first batch is written");
+            release.countDown();
+            writer.flush();
+            expectEquals(0, writer.getPendingCount(), "pending after flush");
+            expectEquals(sample("Alice", 3), repository.load("alice"), "alice");
+            expectEquals(sample("Bob", 1), repository.load("bob"), "bob");
+            expectEquals(4L, writer.getSubmittedCount(), "submitted");
+            expectEquals(1L, writer.getCoalescedCount(), "coalesced");
+            expectEquals(2L, writer.getBatchCount(), "batches");
+            expectEquals(3L, writer.getWrittenCount(), "written");
+        }
+    }
+
+    private static void writeBehindFailingStore() throws Exception {
+        RecordingRepository repository = new RecordingRepository(null);
+        repository.failing = true;
+        ScheduleWriteBehind writer = ScheduleWriteBehind.forRepository(repository, 16, 8, null);
+        try {
+            writer.submit("alice", sample("Alice", 1));
+            try {
+                if (!writer.awaitFlush(60, TimeUnit.SECONDS)) {
+                    throw new AssertionError("flush did not finish against a failing store");
+                }
+                throw new AssertionError("flush did not report the dropped batch");
+            } catch (IOException expected) {
+                // The batch is dropped after MAX_ATTEMPTS and flush reports it.
+            }
+            expectEquals((long) ScheduleWriteBehind.MAX_ATTEMPTS, writer.getFailureCount(), "attempts");
+            expectEquals(1L, writer.getDroppedCount(), "dropped");
+            writer.submit("bob", sample("Bob", 1));
+        } finally {
+            expect(writer.close(5, TimeUnit.SECONDS), "close did not finish against a failing store");
+        }
+        expectEquals(2L, writer.getDroppedCount(), "dropped after close");
+    }
+
+    // Keeps saves in memory; the first batch waits for the latch, if there is one.
+    private static final class RecordingRepository implements ScheduleRepository {
+        private final Map<String, ScheduleData> saved = new ConcurrentHashMap<>();
+        private final CountDownLatch release;
+        private final CountDownLatch firstBatch = new CountDownLatch(1);
+        private volatile boolean failing;
+
+        private RecordingRepository(CountDownLatch release) {
+            this.release = release;
+        }
+
+        void awaitFirstBatch() throws InterruptedException {
+            expect(firstBatch.await(10, TimeUnit.SECONDS), "the writer did not start a batch");
+        }
+
+        @Override
+        public void save(String profileId, ScheduleData schedule) throws IOException {
+            saveAll(Collections.singletonMap(profileId, schedule));
+        }
+
+        @Override
+        public void saveAll(Map<String, ScheduleData> schedules) throws IOException {
+            if (firstBatch.getCount() > 0 && release != null) {
+                firstBatch.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", ex);
+                }
+            }
+            if (failing) {
+                throw new IOException("Store unavailable");
+            }
+            saved.putAll(schedules);
+        }
+
+        @Override
+        public ScheduleData load(String profileId) {
+            return saved.get(profileId);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static ScheduleData sample(String name, double minutes) {
+        ClassEntry[] classes = {
+            new ClassEntry(name, ClassEntry.Level.HL, 4, 6, true, ClassEntry.Difficulty.HARD),
+            new ClassEntry("English", ClassEntry.Level.SL, 5, 6, false, ClassEntry.Difficulty.AVERAGE),
+            ClassEntry.EMPTY,
+        };
+        return new ScheduleData(classes, new double[] {minutes, 60, 45.5, 0, 90, 0, 120});
+    }
+
+    private static void truncate(Path file, int bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - bytes);
+        }
+    }
+
+    private static void appendGarbage(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static void expectEquals(Object expected, Object actual, String what) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless batch mode: reads student records from a CSV or JSON Lines file, calculates each schedule
+ * and writes the results as they are produced. Records are handled in fixed-size chunks, so memory use
+ * depends on the chunk size and not on the size of the file. Rejected records are reported on
+ * standard error with their line number and skipped; throughput statistics follow at the end. CSV
+ * output has one set of day columns, taken from the first record, so later records with a different
+ * number of days are rejected; JSON Lines output takes any mix.
+ *
+ * <pre>
+ * java ScheduleCli [--format csv|jsonl] [--output-format csv|jsonl] [--classes N]
+ *                  [--chunk N] [--parallelism N] [--quiet] [--metrics] input|- [output|-]
+ * </pre>
+ *
+ * <p>{@code --metrics} adds the {@link ScheduleMetrics} timer table to the statistics.
+ */
+public final class ScheduleCli {
+
+    private static final int DEFAULT_CHUNK = 4096;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private ScheduleRecordCodec.Format inputFormat;
+    private ScheduleRecordCodec.Format outputFormat;
+    private int classCount = ScheduleData.DEFAULT_CLASS_COUNT;
+    private int chunkSize = DEFAULT_CHUNK;
+    private int parallelism;
+    private boolean quiet;
+    private boolean metrics;
+    private String input;
+    private String output = "-";
+
+    private long lines;
+    private long records;
+    private long rejected;
+    private long classRows;
+    private boolean headerWritten;
+    private int csvDayCount = -1;
+
+    private ScheduleCli() {
+    }
+
+    public static void main(String[] args) {
+        ScheduleCli cli = new ScheduleCli();
+        try {
+            cli.parseArguments(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: java ScheduleCli [--format csv|jsonl] [--output-format csv|jsonl] [--classes N]"
+                    + " [--chunk N] [--parallelism N] [--quiet] [--metrics] input|- [output|-]");
+            System.exit(2);
+            return;
+        }
+        WeightProfile.useConfigured();
+        try {
+            System.exit(cli.run() ? 0 : 1);
+        } catch (IOException ex) {
+            System.err.println("Batch failed: " + ex.getMessage());
+            System.exit(3);
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--format":
+                    inputFormat = ScheduleRecordCodec.Format.parse(value(args, ++i, arg));
+                    break;
+                case "--output-format":
+                    outputFormat = ScheduleRecordCodec.Format.parse(value(args, ++i, arg));
+                    break;
+                case "--classes":
+                    classCount = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--chunk":
+                    chunkSize = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--parallelism":
+                    parallelism = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "--metrics":
+                    metrics = true;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    files.add(arg);
+            }
+        }
+        if (files.isEmpty() || files.size() > 2) {
+            throw new IllegalArgumentException("Expected an input file and an optional output file");
+        }
+        input = files.get(0);
+        if (files.size() == 2) {
+            output = files.get(1);
+        }
+        if (inputFormat == null) {
+            inputFormat = "-".equals(input) ? ScheduleRecordCodec.Format.CSV : ScheduleRecordCodec.Format.forFileName(input);
+        }
+        if (outputFormat == null) {
+            outputFormat = "-".equals(output) ? inputFormat : ScheduleRecordCodec.Format.forFileName(output);
+        }
+    }
+
+    private boolean run() throws IOException {
+        long start = System.nanoTime();
+        try (BufferedReader reader = "-".equals(input)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+             Writer writer = "-".equals(output)
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)
+                     : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            List<String> ids = new ArrayList<>(chunkSize);
+            List<ScheduleData> chunk = new ArrayList<>(chunkSize);
+            StringBuilder buffer = new StringBuilder(1 << 16);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (!accept(line, ids, chunk)) {
+                    continue;
+                }
+                if (chunk.size() == chunkSize) {
+                    writeChunk(ids, chunk, buffer, writer);
+                }
+            }
+            writeChunk(ids, chunk, buffer, writer);
+        }
+        if (!quiet) {
+            printStatistics(System.nanoTime() - start);
+        }
+        if (metrics) {
+            System.err.print(ScheduleMetrics.dump());
+        }
+        return rejected == 0;
+    }
+
+    private boolean accept(String line, List<String> ids, List<ScheduleData> chunk) {
+        if (line.trim().isEmpty()) {
+            return false;
+        }
+        if (inputFormat == ScheduleRecordCodec.Format.CSV && lines == 1 && ScheduleRecordCodec.isCsvHeader(line)) {
+            return false;
+        }
+        try {
+            ScheduleRecordCodec.Record record = inputFormat == ScheduleRecordCodec.Format.CSV
+                    ? ScheduleRecordCodec.parseCsv(line, classCount)
+                    : ScheduleRecordCodec.parseJson(line);
+            if (outputFormat == ScheduleRecordCodec.Format.CSV) {
+                checkCsvDayCount(record.getSchedule());
+            }
+            ids.add(record.getId());
+            chunk.add(record.getSchedule());
+            return true;
+        } catch (IllegalArgumentException ex) {
+            rejected++;
+            if (rejected <= MAX_REPORTED_ERRORS) {
+                System.err.println("line " + lines + ": " + ex.getMessage());
+            } else if (rejected == MAX_REPORTED_ERRORS + 1) {
+                System.err.println("Further rejected lines are counted but not listed.");
+            }
+            return false;
+        }
+    }
+
+    // Results have at least the default number of days, like the calculator's output.
+    private void checkCsvDayCount(ScheduleData schedule) {
+        int dayCount = Math.max(schedule.getDayCount(), ScheduleData.DEFAULT_DAY_COUNT);
+        if (csvDayCount < 0) {
+            csvDayCount = dayCount;
+        } else if (dayCount != csvDayCount) {
+            throw new IllegalArgumentException("Record has " + dayCount + " days but the CSV output has "
+                    + csvDayCount + "; use --output-format jsonl for mixed day counts");
+        }
+    }
+
+    private void writeChunk(List<String> ids, List<ScheduleData> chunk, StringBuilder buffer, Writer writer) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<ScheduleCalculator.ScheduleResult> results = ScheduleCalculator.calculateAll(chunk, parallelism);
+        for (int i = 0; i < results.size(); i++) {
+            ScheduleCalculator.ScheduleResult result = results.get(i);
+            if (outputFormat == ScheduleRecordCodec.Format.CSV) {
+                if (!headerWritten) {
+                    ScheduleRecordCodec.appendCsvHeader(buffer, csvDayCount);
+                    headerWritten = true;
+                }
+                ScheduleRecordCodec.appendCsv(buffer, ids.get(i), result);
+            } else {
+                ScheduleRecordCodec.appendJson(buffer, ids.get(i), result);
+                buffer.append('\n');
+            }
+            classRows += result.getClassCount();
+            if (buffer.length() >= 1 << 16) {
+                writer.append(buffer);
+                buffer.setLength(0);
+            }
+        }
+        writer.append(buffer);
+        buffer.setLength(0);
+        records += results.size();
+        ids.clear();
+        chunk.clear();
+    }
+
+    private void printStatistics(long nanos) {
+        double seconds = nanos / 1e9;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.err.printf(Locale.US, "%d records (%d class rows) written, %d rejected, %d lines read%n",
+                records, classRows, rejected, lines);
+        System.err.printf(Locale.US, "%.2f s, %.0f records/s, %.1f us/record, peak heap %.1f MB%n",
+                seconds,
+                records / Math.max(seconds, 1e-9),
+                records == 0 ? 0.0 : nanos / 1e3 / records,
+                peakHeap / (1024.0 * 1024.0));
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below with the option name.
+        }
+        throw new IllegalArgumentException(option + " must be a positive whole number: " + value);
+    }
+}
@@ -0,0 +1,96 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of schedules shared by the on-disk store and the revision journal. Classes are
+ * written as a length-prefixed UTF-8 name followed by the level ordinal, both grades, the test flag
+ * and the difficulty ordinal; days are written as doubles. Text is encoded to bytes once and sized
+ * from those bytes, so a length prefix always matches what is written, whatever the text contains.
+ */
+final class ScheduleCodec {
+
+    private static final ClassEntry.Level[] LEVELS = ClassEntry.Level.values();
+    private static final ClassEntry.Difficulty[] DIFFICULTIES = ClassEntry.Difficulty.values();
+    private static final int CLASS_FIELDS_SIZE = 5;
+
+    private ScheduleCodec() {
+    }
+
+    /** Returns the encoded schedule, positioned at its start. */
+    static ByteBuffer encodeSchedule(ScheduleData schedule) {
+        byte[][] classes = new byte[schedule.getClassCount()][];
+        int size = 8 + schedule.getDayCount() * 8;
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = encodeClass(schedule.getClassEntry(i));
+            size += classes[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(classes.length);
+        buffer.putInt(schedule.getDayCount());
+        for (byte[] entry : classes) {
+            buffer.put(entry);
+        }
+        for (int day = 0; day < schedule.getDayCount(); day++) {
+            buffer.putDouble(schedule.getMinutes(day));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static ScheduleData readSchedule(ByteBuffer buffer) {
+        int classCount = buffer.getInt();
+        int dayCount = buffer.getInt();
+        ClassEntry[] classes = new ClassEntry[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classes[i] = readClass(buffer);
+        }
+        double[] minutes = new double[dayCount];
+        for (int day = 0; day < dayCount; day++) {
+            minutes[day] = buffer.getDouble();
+        }
+        return new ScheduleData(classes, minutes);
+    }
+
+    static byte[] encodeClass(ClassEntry entry) {
+        byte[] name = utf8(entry.getName());
+        ByteBuffer buffer = ByteBuffer.allocate(2 + name.length + CLASS_FIELDS_SIZE);
+        writeString(buffer, name);
+        buffer.put((byte) entry.getLevel().ordinal());
+        buffer.put(entry.getCurrentGrade());
+        buffer.put(entry.getTargetGrade());
+        buffer.put((byte) (entry.isTestUpcoming() ? 1 : 0));
+        buffer.put((byte) entry.getDifficulty().ordinal());
+        return buffer.array();
+    }
+
+    static ClassEntry readClass(ByteBuffer buffer) {
+        String name = readString(buffer);
+        ClassEntry.Level level = LEVELS[buffer.get()];
+        byte current = buffer.get();
+        byte target = buffer.get();
+        boolean test = buffer.get() != 0;
+        ClassEntry.Difficulty difficulty = DIFFICULTIES[buffer.get()];
+        return new ClassEntry(name, level, current, target, test, difficulty);
+    }
+
+    /** Encodes text for {@link #writeString}, which takes {@code 2 + bytes.length} bytes. */
+    static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Text too long to store: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    static void writeString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
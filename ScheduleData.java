@@ -1,54 +1,192 @@
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
-public class ScheduleData {
+/**
+ * Immutable snapshot of a student's classes and daily study minutes. Accessors return the stored
+ * values or read-only views without copying, and the {@code with} methods share every row they do
+ * not change, so many revisions of a schedule can be held cheaply.
+ */
+public final class ScheduleData {
 
-    private static final int CLASS_COUNT = 6;
-    private static final int CLASS_ATTRIBUTES = 6;
-    private static final int DAY_COUNT = 7;
+    public static final int DEFAULT_CLASS_COUNT = 6;
+    public static final int CLASS_ATTRIBUTES = 6;
+    public static final int DEFAULT_DAY_COUNT = 7;
 
-    private final String[][] classValues;
+    private final ClassEntry[] classes;
     private final double[] minutesPerDay;
+    private List<ClassEntry> classView;
+    private long contentHash;
 
     public ScheduleData(String[][] classValues, double[] minutesPerDay) {
-        this.classValues = normaliseClassValues(classValues);
+        long start = ScheduleMetrics.start();
+        this.classes = parseClassValues(classValues);
         this.minutesPerDay = normaliseMinutes(minutesPerDay);
+        ScheduleMetrics.SCHEDULE_DATA.stop(start);
+    }
+
+    public ScheduleData(ClassEntry[] classes, double[] minutesPerDay) {
+        this(classes, minutesPerDay, false);
+    }
+
+    // Shared arrays are already normalised and owned by another instance, so they are kept as they are.
+    private ScheduleData(ClassEntry[] classes, double[] minutesPerDay, boolean shared) {
+        if (shared) {
+            this.classes = classes;
+            this.minutesPerDay = minutesPerDay;
+            return;
+        }
+        long start = ScheduleMetrics.start();
+        this.classes = normaliseClasses(classes);
+        this.minutesPerDay = normaliseMinutes(minutesPerDay);
+        ScheduleMetrics.SCHEDULE_DATA.stop(start);
+    }
+
+    public ClassEntry getClassEntry(int index) {
+        return classes[index];
+    }
+
+    public List<ClassEntry> getClassEntries() {
+        List<ClassEntry> view = classView;
+        if (view == null) {
+            view = Collections.unmodifiableList(Arrays.asList(classes));
+            classView = view;
+        }
+        return view;
+    }
+
+    public double getMinutes(int day) {
+        return minutesPerDay[day];
+    }
+
+    public DoubleBuffer getMinutesView() {
+        return DoubleBuffer.wrap(minutesPerDay).asReadOnlyBuffer();
+    }
+
+    public int getClassCount() {
+        return classes.length;
+    }
+
+    public int getDayCount() {
+        return minutesPerDay.length;
     }
 
     public String[][] getClassValues() {
-        return normaliseClassValues(classValues);
+        String[][] values = new String[classes.length][];
+        for (int i = 0; i < classes.length; i++) {
+            values[i] = classes[i].toRow();
+        }
+        return values;
     }
 
     public double[] getMinutesPerDay() {
         return Arrays.copyOf(minutesPerDay, minutesPerDay.length);
     }
 
-    private String[][] normaliseClassValues(String[][] source) {
-        String[][] copy = new String[CLASS_COUNT][CLASS_ATTRIBUTES];
-        for (int i = 0; i < CLASS_COUNT; i++) {
-            Arrays.fill(copy[i], "");
+    public ScheduleData withClass(int index, ClassEntry entry) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Class index " + index);
         }
-        if (source != null) {
-            int rows = Math.min(source.length, CLASS_COUNT);
-            for (int i = 0; i < rows; i++) {
-                String[] row = source[i];
-                if (row == null) {
-                    continue;
-                }
-                int cols = Math.min(row.length, CLASS_ATTRIBUTES);
-                for (int j = 0; j < cols; j++) {
-                    copy[i][j] = row[j] == null ? "" : row[j];
-                }
+        ClassEntry value = entry == null ? ClassEntry.EMPTY : entry;
+        if (index < classes.length && classes[index].equals(value)) {
+            return this;
+        }
+        ClassEntry[] updated = Arrays.copyOf(classes, Math.max(classes.length, index + 1));
+        for (int i = classes.length; i < updated.length; i++) {
+            updated[i] = ClassEntry.EMPTY;
+        }
+        updated[index] = value;
+        return new ScheduleData(updated, minutesPerDay, true);
+    }
+
+    public ScheduleData withMinutes(int day, double minutes) {
+        if (day < 0) {
+            throw new IndexOutOfBoundsException("Day " + day);
+        }
+        if (day < minutesPerDay.length && Double.compare(minutesPerDay[day], minutes) == 0) {
+            return this;
+        }
+        double[] updated = Arrays.copyOf(minutesPerDay, Math.max(minutesPerDay.length, day + 1));
+        updated[day] = minutes;
+        return new ScheduleData(classes, updated, true);
+    }
+
+    public ScheduleData withMinutesPerDay(double[] minutes) {
+        return new ScheduleData(classes, normaliseMinutes(minutes), true);
+    }
+
+    /** 64-bit hash of the normalised classes and minutes, computed once per instance. */
+    public long contentHash() {
+        long hash = contentHash;
+        if (hash == 0) {
+            hash = 0xcbf29ce484222325L;
+            for (ClassEntry entry : classes) {
+                hash = (hash ^ entry.hashCode()) * 0x100000001b3L;
             }
+            hash = (hash ^ classes.length) * 0x100000001b3L;
+            for (double minutes : minutesPerDay) {
+                hash = (hash ^ Double.doubleToLongBits(minutes)) * 0x100000001b3L;
+            }
+            hash = hash == 0 ? 1 : hash;
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ScheduleData)) {
+            return false;
+        }
+        ScheduleData data = (ScheduleData) other;
+        return contentHash() == data.contentHash()
+                && Arrays.equals(minutesPerDay, data.minutesPerDay)
+                && Arrays.equals(classes, data.classes);
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = contentHash();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    // Shared with the engine so a calculation reads the stored arrays directly; callers must not modify them.
+    ClassEntry[] classArray() {
+        return classes;
+    }
+
+    double[] minutesArray() {
+        return minutesPerDay;
+    }
+
+    private static ClassEntry[] parseClassValues(String[][] source) {
+        int rows = Math.max(source != null ? source.length : 0, DEFAULT_CLASS_COUNT);
+        ClassEntry[] parsed = new ClassEntry[rows];
+        for (int i = 0; i < rows; i++) {
+            String[] row = source != null && i < source.length ? source[i] : null;
+            parsed[i] = row == null ? ClassEntry.EMPTY : ClassEntry.parse(row);
+        }
+        return parsed;
+    }
+
+    private static ClassEntry[] normaliseClasses(ClassEntry[] source) {
+        int rows = Math.max(source != null ? source.length : 0, DEFAULT_CLASS_COUNT);
+        ClassEntry[] copy = new ClassEntry[rows];
+        for (int i = 0; i < rows; i++) {
+            ClassEntry entry = source != null && i < source.length ? source[i] : null;
+            copy[i] = entry == null ? ClassEntry.EMPTY : entry;
         }
         return copy;
     }
 
-    private double[] normaliseMinutes(double[] source) {
-        double[] copy = new double[DAY_COUNT];
+    private static double[] normaliseMinutes(double[] source) {
+        double[] copy = new double[Math.max(source != null ? source.length : 0, DEFAULT_DAY_COUNT)];
         if (source != null) {
-            for (int i = 0; i < Math.min(source.length, DAY_COUNT); i++) {
-                copy[i] = source[i];
-            }
+            System.arraycopy(source, 0, copy, 0, source.length);
         }
         return copy;
     }
@@ -0,0 +1,144 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for the places a slow or hung session can spend its time. They cost a
+ * few field writes when no recording is running. {@code schedule.jfc} enables them on top of the
+ * JDK's default settings:
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:settings=default,settings=schedule.jfc,filename=schedule.jfr Menu
+ * </pre>
+ */
+public final class ScheduleEvents {
+
+    private static final String CATEGORY = "IB Scheduler";
+
+    private ScheduleEvents() {
+    }
+
+    @Name("ibscheduler.Calculation")
+    @Label("Schedule Calculation")
+    @Category({CATEGORY, "Calculation"})
+    @Threshold("20 ms")
+    @StackTrace(false)
+    public static final class Calculation extends Event {
+        @Label("Classes")
+        int classCount;
+
+        @Label("Days")
+        int dayCount;
+    }
+
+    @Name("ibscheduler.Persistence")
+    @Label("Schedule Persistence")
+    @Category({CATEGORY, "Persistence"})
+    public static final class Persistence extends Event {
+        @Label("Store")
+        String store;
+
+        @Label("Profiles")
+        int profiles;
+
+        @Label("Rows Written")
+        @Description("Database rows or file records written by the call")
+        long rows;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+
+        @Label("Error")
+        @Description("The exception that failed the call, or null when it succeeded")
+        String error;
+    }
+
+    @Name("ibscheduler.WizardStep")
+    @Label("Wizard Step")
+    @Description("A Next or Back press in the schedule wizard, including validation and any calculation or save it starts")
+    @Category({CATEGORY, "Swing"})
+    @StackTrace(false)
+    public static final class WizardStep extends Event {
+        @Label("Action")
+        String action;
+
+        @Label("From Step")
+        String from;
+
+        @Label("To Step")
+        String to;
+    }
+
+    @Name("ibscheduler.EdtTask")
+    @Label("Long EDT Task")
+    @Description("An AWT event whose dispatch held the event dispatch thread past the threshold")
+    @Category({CATEGORY, "Swing"})
+    @Threshold("20 ms")
+    @StackTrace(false)
+    public static final class EdtTask extends Event {
+        @Label("Event Class")
+        String eventClass;
+
+        @Label("Source Class")
+        String sourceClass;
+
+        @Label("Detail")
+        String detail;
+    }
+
+    /** Replaces the system event queue with one that records {@link EdtTask} events. */
+    public static void installEdtMonitor() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new MonitoredEventQueue());
+    }
+
+    public static Persistence beginPersistence(String store) {
+        Persistence event = new Persistence();
+        event.store = store;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits a persistence event from a {@code finally} block, so a call that is slow and then fails is
+     * recorded too. Pass the exception that failed the call, or null when it succeeded.
+     */
+    public static void commitPersistence(Persistence event, int profiles, long rows, long bytes, Throwable failure) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.profiles = profiles;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.error = failure == null ? null : failure.toString();
+            event.commit();
+        }
+    }
+
+    private static final class MonitoredEventQueue extends EventQueue {
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            EdtTask task = new EdtTask();
+            task.begin();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                task.end();
+                // The description is only built for events that pass the threshold.
+                if (task.shouldCommit()) {
+                    task.eventClass = event.getClass().getName();
+                    task.sourceClass = event.getSource() == null ? null : event.getSource().getClass().getName();
+                    task.detail = event.paramString();
+                    task.commit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,482 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP service for schedule generation, built on the JDK's {@code com.sun.net.httpserver}.
+ *
+ * <ul>
+ *     <li>{@code POST /calculate} takes one JSON record and returns its calculated schedule.</li>
+ *     <li>{@code POST /calculate/batch} takes JSON Lines and streams one result line per record.</li>
+ *     <li>{@code PUT /schedules/{id}} stores a record and {@code GET /schedules/{id}} returns it with
+ *     its calculated schedule.</li>
+ *     <li>{@code GET /metrics} returns the {@link ScheduleMetrics} timers as plain text.</li>
+ * </ul>
+ *
+ * <p>Records use the {@link ScheduleRecordCodec} JSON form. Requests run on virtual threads when the
+ * runtime has them and on a bounded pool otherwise; requests the pool cannot queue are answered with 503
+ * from a separate thread, so the server's dispatcher never runs a handler itself. Calculation is gated
+ * by semaphores, so under load requests wait a short, fixed time for a permit and are then turned away
+ * with 503 rather than queueing without bound. Request bodies and batch lines are limited to
+ * {@link #MAX_BODY_BYTES}. Schedules are kept in memory unless {@code --store path} names a
+ * {@link FileScheduleStore}.
+ */
+public final class ScheduleHttpService implements AutoCloseable {
+
+    static final int MAX_BODY_BYTES = 64 * 1024;
+    static final int MAX_PROFILE_ID_LENGTH = 64;
+
+    private static final long PERMIT_WAIT_MILLIS = 250;
+    private static final int BATCH_CHUNK = 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String JSON_LINES = "application/x-ndjson; charset=utf-8";
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final String BUSY = "The service is busy, try again shortly";
+
+    // Set on the overflow thread, where every request is answered with 503 without being handled.
+    private static final ThreadLocal<Boolean> REJECTING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor overflow;
+    private final ScheduleRepository repository;
+    private final ScheduleResultCache cache = new ScheduleResultCache(1024);
+    private final Semaphore calculatePermits;
+    private final Semaphore batchPermits;
+
+    public ScheduleHttpService(InetSocketAddress address, ScheduleRepository repository) throws IOException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.repository = repository;
+        this.calculatePermits = new Semaphore(processors * 4);
+        this.batchPermits = new Semaphore(Math.max(1, processors / 2));
+        this.executor = newRequestExecutor(processors * 16);
+        this.overflow = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(processors * 64), daemonThreads("schedule-http-overflow"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.server = HttpServer.create(address, 1024);
+        this.server.setExecutor(this::dispatch);
+        this.server.createContext("/calculate", guarded(this::handleCalculate));
+        this.server.createContext("/schedules/", guarded(this::handleSchedule));
+        this.server.createContext("/metrics", guarded(this::handleMetrics));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        String host = "127.0.0.1";
+        String store = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--host".equals(args[i]) && i + 1 < args.length) {
+                host = args[++i];
+            } else if ("--store".equals(args[i]) && i + 1 < args.length) {
+                store = args[++i];
+            } else {
+                System.err.println("Usage: java ScheduleHttpService [--host 127.0.0.1] [--port 8080] [--store path]");
+                System.exit(2);
+            }
+        }
+        ScheduleMetrics.registerMBeans();
+        Path weights = WeightProfile.useConfigured();
+        if (weights != null) {
+            WeightProfile.watch(weights, 2, TimeUnit.SECONDS);
+        }
+        ScheduleRepository repository = store != null ? FileScheduleStore.open(Paths.get(store)) : new MemoryRepository();
+        ScheduleHttpService service = new ScheduleHttpService(new InetSocketAddress(host, port), repository);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::close, "schedule-http-shutdown"));
+        service.start();
+        System.err.println("Schedule service listening on http://" + host + ":" + service.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        overflow.shutdown();
+        try {
+            repository.close();
+        } catch (IOException ex) {
+            System.err.println("Could not close the schedule store: " + ex.getMessage());
+        }
+    }
+
+    // Virtual threads are looked up reflectively so the service still builds and runs on Java 17.
+    static ExecutorService newRequestExecutor(int poolSize) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(poolSize * 64), daemonThreads("schedule-http"),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /*
+     * Runs on the server's dispatcher thread. When the request pool is full the exchange goes to the
+     * overflow thread, which only sends 503; if that is full too the rejection reaches the server, which
+     * drops the connection.
+     */
+    private void dispatch(Runnable exchange) {
+        try {
+            executor.execute(exchange);
+        } catch (RejectedExecutionException ex) {
+            overflow.execute(() -> {
+                REJECTING.set(Boolean.TRUE);
+                try {
+                    exchange.run();
+                } finally {
+                    REJECTING.remove();
+                }
+            });
+        }
+    }
+
+    private static HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            if (!REJECTING.get()) {
+                handler.handle(exchange);
+                return;
+            }
+            try {
+                sendBusy(exchange);
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void handleCalculate(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use POST");
+            } else if ("/calculate".equals(path)) {
+                calculateOne(exchange);
+            } else if ("/calculate/batch".equals(path)) {
+                calculateBatch(exchange);
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 200, TEXT, ScheduleMetrics.dump());
+            } else {
+                sendError(exchange, 405, "Use GET");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleSchedule(HttpExchange exchange) throws IOException {
+        try {
+            String id = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring("/schedules/".length()),
+                    StandardCharsets.UTF_8);
+            if (id.isEmpty() || id.length() > MAX_PROFILE_ID_LENGTH || id.indexOf('/') >= 0) {
+                sendError(exchange, 404, "Schedule ids are 1 to " + MAX_PROFILE_ID_LENGTH + " characters without '/'");
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                getSchedule(exchange, id);
+            } else if ("PUT".equals(exchange.getRequestMethod())) {
+                putSchedule(exchange, id);
+            } else {
+                sendError(exchange, 405, "Use GET or PUT");
+            }
+        } catch (IllegalArgumentException ex) {
+            sendError(exchange, 400, ex.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void calculateOne(HttpExchange exchange) throws IOException {
+        ScheduleRecordCodec.Record record;
+        try {
+            record = ScheduleRecordCodec.parseJson(readBody(exchange));
+        } catch (IllegalArgumentException ex) {
+            sendError(exchange, 400, ex.getMessage());
+            return;
+        }
+        if (!acquire(calculatePermits, exchange)) {
+            return;
+        }
+        StringBuilder out = new StringBuilder(1024);
+        try {
+            ScheduleRecordCodec.appendJson(out, record.getId(), cache.get(record.getSchedule()));
+        } finally {
+            calculatePermits.release();
+        }
+        send(exchange, 200, JSON, out);
+    }
+
+    private void calculateBatch(HttpExchange exchange) throws IOException {
+        if (!acquire(batchPermits, exchange)) {
+            return;
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", JSON_LINES);
+            exchange.sendResponseHeaders(200, 0);
+            try (LineReader reader = new LineReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), MAX_BODY_BYTES);
+                 Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                List<String> ids = new ArrayList<>(BATCH_CHUNK);
+                List<ScheduleData> chunk = new ArrayList<>(BATCH_CHUNK);
+                StringBuilder out = new StringBuilder(1 << 16);
+                StringBuilder line = new StringBuilder(1024);
+                long lineNumber = 0;
+                while (reader.readLine(line)) {
+                    lineNumber++;
+                    if (isBlank(line)) {
+                        continue;
+                    }
+                    try {
+                        if (line.length() > MAX_BODY_BYTES) {
+                            throw new IllegalArgumentException("Line is longer than " + MAX_BODY_BYTES + " characters");
+                        }
+                        ScheduleRecordCodec.Record record = ScheduleRecordCodec.parseJson(line.toString());
+                        ids.add(record.getId());
+                        chunk.add(record.getSchedule());
+                    } catch (IllegalArgumentException ex) {
+                        writeBatch(ids, chunk, out, writer);
+                        out.append("{\"line\":").append(lineNumber).append(",\"error\":");
+                        Json.appendString(out, ex.getMessage());
+                        out.append("}\n");
+                    }
+                    if (chunk.size() == BATCH_CHUNK) {
+                        writeBatch(ids, chunk, out, writer);
+                    }
+                }
+                writeBatch(ids, chunk, out, writer);
+            }
+        } finally {
+            batchPermits.release();
+        }
+    }
+
+    // Results are written in input order, so a rejected line is reported between the records around it.
+    private void writeBatch(List<String> ids, List<ScheduleData> chunk, StringBuilder out, Writer writer) throws IOException {
+        if (!chunk.isEmpty()) {
+            List<ScheduleCalculator.ScheduleResult> results = ScheduleCalculator.calculateAll(chunk, 1);
+            for (int i = 0; i < results.size(); i++) {
+                ScheduleRecordCodec.appendJson(out, ids.get(i), results.get(i));
+                out.append('\n');
+            }
+            ids.clear();
+            chunk.clear();
+        }
+        writer.append(out);
+        out.setLength(0);
+    }
+
+    private void getSchedule(HttpExchange exchange, String id) throws IOException {
+        ScheduleData schedule = repository.load(id);
+        if (schedule == null) {
+            sendError(exchange, 404, "No schedule " + id);
+            return;
+        }
+        if (!acquire(calculatePermits, exchange)) {
+            return;
+        }
+        StringBuilder out = new StringBuilder(2048);
+        try {
+            out.append("{\"schedule\":");
+            ScheduleRecordCodec.appendRecordJson(out, id, schedule);
+            out.append(",\"result\":");
+            ScheduleRecordCodec.appendJson(out, id, cache.get(schedule));
+            out.append('}');
+        } finally {
+            calculatePermits.release();
+        }
+        send(exchange, 200, JSON, out);
+    }
+
+    private void putSchedule(HttpExchange exchange, String id) throws IOException {
+        ScheduleRecordCodec.Record record = ScheduleRecordCodec.parseJson(readBody(exchange));
+        repository.save(id, record.getSchedule());
+        StringBuilder out = new StringBuilder(1024);
+        ScheduleRecordCodec.appendRecordJson(out, id, record.getSchedule());
+        send(exchange, 200, JSON, out);
+    }
+
+    private static boolean acquire(Semaphore permits, HttpExchange exchange) throws IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(PERMIT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            sendBusy(exchange);
+        }
+        return acquired;
+    }
+
+    private static void sendBusy(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendError(exchange, 503, BUSY);
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                if (body.size() + read > MAX_BODY_BYTES) {
+                    throw new IllegalArgumentException("Request body is larger than " + MAX_BODY_BYTES + " bytes");
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        Json.appendString(out, message == null ? "" : message);
+        out.append('}');
+        send(exchange, status, JSON, out);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Line reader for request bodies that keeps at most {@code limit + 1} characters of a line, so an
+     * endless line costs a bounded buffer; the rest of an overlong line is read and discarded.
+     */
+    private static final class LineReader implements AutoCloseable {
+        private final Reader in;
+        private final int limit;
+        private final char[] buffer = new char[8192];
+        private int next;
+        private int end;
+
+        private LineReader(Reader in, int limit) {
+            this.in = in;
+            this.limit = limit;
+        }
+
+        /** Reads the next line, without its terminator, into {@code line}; returns false at end of input. */
+        boolean readLine(StringBuilder line) throws IOException {
+            line.setLength(0);
+            boolean read = false;
+            while (true) {
+                if (next == end) {
+                    end = in.read(buffer, 0, buffer.length);
+                    next = 0;
+                    if (end <= 0) {
+                        end = 0;
+                        return read;
+                    }
+                }
+                read = true;
+                int start = next;
+                while (next < end && buffer[next] != '\n') {
+                    next++;
+                }
+                line.append(buffer, start, Math.min(next - start, Math.max(0, limit + 1 - line.length())));
+                if (next < end) {
+                    next++;
+                    int last = line.length() - 1;
+                    if (last >= 0 && last < limit && line.charAt(last) == '\r') {
+                        line.setLength(last);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MemoryRepository implements ScheduleRepository {
+        private final Map<String, ScheduleData> schedules = new ConcurrentHashMap<>();
+
+        @Override
+        public void save(String profileId, ScheduleData schedule) {
+            schedules.put(profileId, schedule);
+        }
+
+        @Override
+        public void saveAll(Map<String, ScheduleData> batch) {
+            schedules.putAll(batch);
+        }
+
+        @Override
+        public ScheduleData load(String profileId) {
+            return schedules.get(profileId);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
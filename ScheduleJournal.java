@@ -0,0 +1,454 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only revision history for saved schedules.
+ *
+ * <p>Every save that changes a profile appends a revision. Most revisions are deltas holding only
+ * the classes and days that differ from the previous revision; every {@code snapshotInterval}
+ * revisions, or whenever a delta would not be smaller, a full snapshot is written instead. Records
+ * are CRC-checked. On open the journal scans record headers, then decodes each profile from its
+ * newest snapshot forward, so replay work per profile is bounded by the snapshot interval. A torn
+ * record left by a crash ends the replay and is truncated.
+ */
+public final class ScheduleJournal implements ScheduleRepository {
+
+    static final int MAGIC = 0x4942534A;
+    static final short FORMAT_VERSION = 1;
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 16;
+
+    private static final byte SNAPSHOT = 1;
+    private static final byte DELTA = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_PREFIX = 4;
+    private static final int CRC_SIZE = 4;
+    // type, revision, timestamp
+    private static final int RECORD_FIXED = 1 + 8 + 8;
+
+    private final Path path;
+    private final int snapshotInterval;
+    private final FileChannel channel;
+    private final Map<String, Profile> profiles = new HashMap<>();
+    private long size;
+
+    public static final class Revision {
+        private final long number;
+        private final long timestamp;
+        private final boolean snapshot;
+
+        private Revision(long number, long timestamp, boolean snapshot) {
+            this.number = number;
+            this.timestamp = timestamp;
+            this.snapshot = snapshot;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public boolean isSnapshot() {
+            return snapshot;
+        }
+    }
+
+    private static final class Profile {
+        private final List<Revision> revisions = new ArrayList<>();
+        private long[] offsets = new long[4];
+        private ScheduleData latest;
+        private int sinceSnapshot;
+
+        private void add(Revision revision, long offset) {
+            if (revisions.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[revisions.size()] = offset;
+            revisions.add(revision);
+            sinceSnapshot = revision.snapshot ? 0 : sinceSnapshot + 1;
+        }
+
+        private int lastSnapshotBefore(int index) {
+            for (int i = index; i >= 0; i--) {
+                if (revisions.get(i).snapshot) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private ScheduleJournal(Path path, int snapshotInterval) throws IOException {
+        this.path = path;
+        this.snapshotInterval = snapshotInterval;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            replay();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public static ScheduleJournal open(Path path) throws IOException {
+        return open(path, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    public static ScheduleJournal open(Path path, int snapshotInterval) throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return new ScheduleJournal(path, snapshotInterval);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized ScheduleData load(String profileId) {
+        Profile profile = profiles.get(profileId);
+        return profile == null ? null : profile.latest;
+    }
+
+    public synchronized List<Revision> getRevisions(String profileId) {
+        Profile profile = profiles.get(profileId);
+        if (profile == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(profile.revisions));
+    }
+
+    /** Rebuilds a past revision from the nearest snapshot at or before it. */
+    public synchronized ScheduleData loadRevision(String profileId, long revisionNumber) throws IOException {
+        Profile profile = profiles.get(profileId);
+        if (profile == null) {
+            return null;
+        }
+        int target = -1;
+        for (int i = profile.revisions.size() - 1; i >= 0; i--) {
+            if (profile.revisions.get(i).number == revisionNumber) {
+                target = i;
+                break;
+            }
+        }
+        if (target < 0) {
+            return null;
+        }
+        if (target == profile.revisions.size() - 1) {
+            return profile.latest;
+        }
+        int start = profile.lastSnapshotBefore(target);
+        ScheduleData schedule = null;
+        for (int i = start; i <= target; i++) {
+            schedule = apply(schedule, readPayload(profile.offsets[i]));
+        }
+        return schedule;
+    }
+
+    @Override
+    public void save(String profileId, ScheduleData schedule) throws IOException {
+        saveAll(Collections.singletonMap(profileId, schedule));
+    }
+
+    @Override
+    public synchronized void saveAll(Map<String, ScheduleData> schedules) throws IOException {
+        ScheduleEvents.Persistence event = ScheduleEvents.beginPersistence("journal");
+        long rows = 0;
+        long written = 0;
+        Exception failure = null;
+        try {
+            long position = size;
+            long now = System.currentTimeMillis();
+            List<Runnable> updates = new ArrayList<>();
+            for (Map.Entry<String, ScheduleData> entry : schedules.entrySet()) {
+                String profileId = entry.getKey();
+                ScheduleData schedule = entry.getValue();
+                Profile profile = profiles.get(profileId);
+                ScheduleData previous = profile == null ? null : profile.latest;
+                if (schedule == null || schedule == previous) {
+                    continue;
+                }
+
+                ByteBuffer delta = previous == null ? null : encodeDelta(previous, schedule);
+                if (delta != null && delta.remaining() == 0) {
+                    continue;
+                }
+                ByteBuffer full = ScheduleCodec.encodeSchedule(schedule);
+                boolean snapshot = delta == null
+                        || profile.sinceSnapshot + 1 >= snapshotInterval
+                        || delta.remaining() >= full.remaining();
+                long number = profile == null || profile.revisions.isEmpty()
+                        ? 1
+                        : profile.revisions.get(profile.revisions.size() - 1).number + 1;
+                ByteBuffer record = snapshot
+                        ? record(profileId, SNAPSHOT, number, now, full)
+                        : record(profileId, DELTA, number, now, delta);
+                writeFully(record, position);
+
+                long offset = position;
+                Revision revision = new Revision(number, now, snapshot);
+                updates.add(() -> {
+                    Profile target = profiles.computeIfAbsent(profileId, id -> new Profile());
+                    target.add(revision, offset);
+                    target.latest = schedule;
+                });
+                position += record.limit();
+            }
+            if (updates.isEmpty()) {
+                return;
+            }
+            channel.force(false);
+            rows = updates.size();
+            written = position - size;
+            size = position;
+            for (Runnable update : updates) {
+                update.run();
+            }
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            ScheduleEvents.commitPersistence(event, schedules.size(), rows, written, failure);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void replay() throws IOException {
+        size = channel.size();
+        if (size < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0).flip();
+            channel.truncate(0);
+            writeFully(header, 0);
+            channel.force(true);
+            size = HEADER_SIZE;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a schedule journal");
+        }
+        if (header.getShort(4) != FORMAT_VERSION) {
+            throw new IOException(path + " uses journal format " + header.getShort(4) + ", expected " + FORMAT_VERSION);
+        }
+
+        // First pass reads only record prefixes to find every revision and where it lives.
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX + 2);
+        long position = HEADER_SIZE;
+        while (position + RECORD_PREFIX + 2 <= size) {
+            prefix.clear();
+            readFully(prefix, position);
+            int length = prefix.getInt(0);
+            int idLength = prefix.getShort(RECORD_PREFIX) & 0xFFFF;
+            if (length < 2 + idLength + RECORD_FIXED + CRC_SIZE || position + RECORD_PREFIX + length > size) {
+                break;
+            }
+            ByteBuffer fixed = ByteBuffer.allocate(idLength + RECORD_FIXED);
+            readFully(fixed, position + RECORD_PREFIX + 2);
+            fixed.flip();
+            byte[] id = new byte[idLength];
+            fixed.get(id);
+            byte type = fixed.get();
+            if (type != SNAPSHOT && type != DELTA) {
+                break;
+            }
+            String profileId = new String(id, StandardCharsets.UTF_8);
+            Revision revision = new Revision(fixed.getLong(), fixed.getLong(), type == SNAPSHOT);
+            Profile profile = profiles.get(profileId);
+            if (profile == null) {
+                if (!revision.snapshot) {
+                    break;
+                }
+                profile = new Profile();
+                profiles.put(profileId, profile);
+            }
+            profile.add(revision, position);
+            position += RECORD_PREFIX + length;
+        }
+
+        // Second pass decodes each profile from its newest snapshot; a bad checksum ends the journal there.
+        long validEnd = position;
+        for (Profile profile : profiles.values()) {
+            int last = profile.revisions.size() - 1;
+            ScheduleData schedule = null;
+            for (int i = profile.lastSnapshotBefore(last); i <= last; i++) {
+                ByteBuffer payload = readPayloadOrNull(profile.offsets[i]);
+                if (payload == null) {
+                    validEnd = Math.min(validEnd, profile.offsets[i]);
+                    break;
+                }
+                schedule = apply(schedule, payload);
+            }
+            profile.latest = schedule;
+        }
+        if (validEnd < position) {
+            profiles.clear();
+            size = validEnd;
+            channel.truncate(validEnd);
+            replay();
+            return;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            size = position;
+        }
+    }
+
+    private static ScheduleData apply(ScheduleData base, ByteBuffer payload) {
+        byte type = payload.get();
+        payload.position(payload.position() + 16);
+        if (type == SNAPSHOT) {
+            return ScheduleCodec.readSchedule(payload);
+        }
+        int classCount = payload.getInt();
+        int dayCount = payload.getInt();
+        ClassEntry[] classes = new ClassEntry[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classes[i] = i < base.getClassCount() ? base.getClassEntry(i) : ClassEntry.EMPTY;
+        }
+        double[] minutes = new double[dayCount];
+        for (int day = 0; day < dayCount; day++) {
+            minutes[day] = day < base.getDayCount() ? base.getMinutes(day) : 0.0;
+        }
+        int changedClasses = payload.getInt();
+        for (int i = 0; i < changedClasses; i++) {
+            classes[payload.getInt()] = ScheduleCodec.readClass(payload);
+        }
+        int changedDays = payload.getInt();
+        for (int i = 0; i < changedDays; i++) {
+            minutes[payload.getInt()] = payload.getDouble();
+        }
+        return new ScheduleData(classes, minutes);
+    }
+
+    // Returns an empty buffer when nothing changed.
+    private static ByteBuffer encodeDelta(ScheduleData previous, ScheduleData schedule) {
+        int size = 16;
+        int changedClasses = 0;
+        byte[][] encoded = new byte[schedule.getClassCount()][];
+        for (int i = 0; i < schedule.getClassCount(); i++) {
+            if (i >= previous.getClassCount() || !previous.getClassEntry(i).equals(schedule.getClassEntry(i))) {
+                encoded[i] = ScheduleCodec.encodeClass(schedule.getClassEntry(i));
+                size += 4 + encoded[i].length;
+                changedClasses++;
+            }
+        }
+        int changedDays = 0;
+        for (int day = 0; day < schedule.getDayCount(); day++) {
+            if (day >= previous.getDayCount() || Double.compare(previous.getMinutes(day), schedule.getMinutes(day)) != 0) {
+                size += 12;
+                changedDays++;
+            }
+        }
+        if (changedClasses == 0 && changedDays == 0
+                && previous.getClassCount() == schedule.getClassCount()
+                && previous.getDayCount() == schedule.getDayCount()) {
+            return ByteBuffer.allocate(0);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(schedule.getClassCount());
+        buffer.putInt(schedule.getDayCount());
+        buffer.putInt(changedClasses);
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i] != null) {
+                buffer.putInt(i);
+                buffer.put(encoded[i]);
+            }
+        }
+        buffer.putInt(changedDays);
+        for (int day = 0; day < schedule.getDayCount(); day++) {
+            if (day >= previous.getDayCount() || Double.compare(previous.getMinutes(day), schedule.getMinutes(day)) != 0) {
+                buffer.putInt(day);
+                buffer.putDouble(schedule.getMinutes(day));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer record(String profileId, byte type, long revision, long timestamp, ByteBuffer body) {
+        byte[] id = ScheduleCodec.utf8(profileId);
+        int length = 2 + id.length + RECORD_FIXED + body.remaining() + CRC_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX + length);
+        buffer.putInt(length);
+        ScheduleCodec.writeString(buffer, id);
+        buffer.put(type);
+        buffer.putLong(revision);
+        buffer.putLong(timestamp);
+        buffer.put(body);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_PREFIX, length - CRC_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    // Positions the returned buffer at the record type, just after the profile id.
+    private ByteBuffer readPayload(long offset) throws IOException {
+        ByteBuffer payload = readPayloadOrNull(offset);
+        if (payload == null) {
+            throw new IOException("Corrupt journal record at offset " + offset);
+        }
+        return payload;
+    }
+
+    private ByteBuffer readPayloadOrNull(long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(RECORD_PREFIX);
+        readFully(lengthBuffer, offset);
+        int length = lengthBuffer.getInt(0);
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_PREFIX);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length - CRC_SIZE);
+        if ((int) crc.getValue() != payload.getInt(length - CRC_SIZE)) {
+            return null;
+        }
+        payload.flip();
+        payload.limit(length - CRC_SIZE);
+        payload.position(2 + (payload.getShort(0) & 0xFFFF));
+        return payload;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                throw new IOException("Unexpected end of schedule journal at offset " + at);
+            }
+            at += read;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Process-wide counters and latency histograms for the hot paths. Recording is lock-free and does
+ * not allocate: each timer is a count, a total, a maximum and 64 power-of-two latency buckets.
+ * Timers are published as JMX MXBeans under {@code ibscheduler:type=Timer} by
+ * {@link #registerMBeans()} and as a plain-text table by {@link #dump()}. Set
+ * {@code -Dschedule.metrics=false} to turn recording off entirely.
+ */
+public final class ScheduleMetrics {
+
+    static final String ENABLED_PROPERTY = "schedule.metrics";
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+    public static final Timer CALCULATE = new Timer("calculate");
+    public static final Timer SCHEDULE_DATA = new Timer("scheduleData.construct");
+    public static final Timer SAVE_SCHEDULE = new Timer("saveSchedule");
+    public static final Timer DATABASE_WRITE = new Timer("database.write");
+    public static final Timer TABLE_UPDATE = new Timer("table.update");
+
+    /** Rows written by database writes, alongside the {@link #DATABASE_WRITE} timer. */
+    public static final LongAdder DATABASE_ROWS = new LongAdder();
+
+    /** Database writes that failed; they are still timed by {@link #DATABASE_WRITE}. */
+    public static final LongAdder DATABASE_FAILURES = new LongAdder();
+
+    private static final Timer[] TIMERS = {CALCULATE, SCHEDULE_DATA, SAVE_SCHEDULE, DATABASE_WRITE, TABLE_UPDATE};
+    private static final String DOMAIN = "ibscheduler";
+    private static boolean registered;
+
+    private ScheduleMetrics() {
+    }
+
+    /** Returns a start time for {@link Timer#stop}, or zero when metrics are off. */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    public static synchronized void registerMBeans() {
+        if (registered || !ENABLED) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Timer timer : TIMERS) {
+                ObjectName name = new ObjectName(DOMAIN + ":type=Timer,name=" + timer.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new StandardMBean(timer, TimerMXBean.class, true), name);
+                }
+            }
+            registered = true;
+        } catch (JMException ex) {
+            System.err.println("Schedule metrics are not available over JMX: " + ex.getMessage());
+        }
+    }
+
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-24s %10s %12s %12s %12s %12s %12s%n",
+                "timer", "count", "mean us", "p50 us", "p99 us", "max us", "total ms"));
+        for (Timer timer : TIMERS) {
+            out.append(String.format(Locale.US, "%-24s %10d %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+                    timer.getName(), timer.getCount(),
+                    timer.getMeanNanos() / 1e3, timer.getP50Nanos() / 1e3, timer.getP99Nanos() / 1e3,
+                    timer.getMaxNanos() / 1e3, timer.getTotalNanos() / 1e6));
+        }
+        out.append(String.format(Locale.US, "%-24s %10d%n", "database.rows", DATABASE_ROWS.sum()));
+        out.append(String.format(Locale.US, "%-24s %10d%n", "database.failures", DATABASE_FAILURES.sum()));
+        return out.toString();
+    }
+
+    public static void reset() {
+        for (Timer timer : TIMERS) {
+            timer.reset();
+        }
+        DATABASE_ROWS.reset();
+        DATABASE_FAILURES.reset();
+    }
+
+    public interface TimerMXBean {
+        String getName();
+
+        long getCount();
+
+        long getTotalNanos();
+
+        long getMeanNanos();
+
+        long getMaxNanos();
+
+        long getP50Nanos();
+
+        long getP90Nanos();
+
+        long getP99Nanos();
+
+        void reset();
+    }
+
+    public static final class Timer implements TimerMXBean {
+        private static final int BUCKETS = 64;
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        // Bucket b counts durations in [2^b, 2^(b+1)) nanoseconds; bucket 0 also holds zero.
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public void stop(long startNanos) {
+            if (ENABLED) {
+                record(System.nanoTime() - startNanos);
+            }
+        }
+
+        public void record(long nanos) {
+            if (!ENABLED) {
+                return;
+            }
+            long value = Math.max(0L, nanos);
+            count.increment();
+            totalNanos.add(value);
+            buckets.incrementAndGet(value == 0 ? 0 : 63 - Long.numberOfLeadingZeros(value));
+            long max = maxNanos.get();
+            while (value > max && !maxNanos.compareAndSet(max, value)) {
+                max = maxNanos.get();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Override
+        public long getMeanNanos() {
+            long samples = count.sum();
+            return samples == 0 ? 0 : totalNanos.sum() / samples;
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return percentile(0.50);
+        }
+
+        @Override
+        public long getP90Nanos() {
+            return percentile(0.90);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return percentile(0.99);
+        }
+
+        /** Upper bound of the bucket holding the given fraction of samples, capped at the maximum seen. */
+        public long percentile(double fraction) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                    return Math.min(upper, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads student records and writes calculated schedules for the headless entry points, one record
+ * per line in either CSV or JSON Lines. Input is parsed strictly: a bad level, grade, test flag,
+ * difficulty or minute value rejects the record with an {@link IllegalArgumentException}.
+ *
+ * <p>A CSV record is {@code id}, then {@code classCount} groups of name, level, current grade, target
+ * grade, upcoming test (Yes/No) and difficulty, then the study minutes for each day. A JSON record
+ * looks like {@code {"id":"s1","classes":[{"name":"Maths","level":"HL","current":4,"target":6,
+ * "test":true,"difficulty":"Hard"}],"minutes":[60,60,60,60,60,0,0]}}.
+ */
+public final class ScheduleRecordCodec {
+
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        public static Format parse(String value) {
+            if ("csv".equalsIgnoreCase(value)) {
+                return CSV;
+            }
+            if ("jsonl".equalsIgnoreCase(value) || "json".equalsIgnoreCase(value) || "ndjson".equalsIgnoreCase(value)) {
+                return JSON_LINES;
+            }
+            throw new IllegalArgumentException("Unknown format: " + value);
+        }
+
+        public static Format forFileName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".jsonl") || lower.endsWith(".ndjson") || lower.endsWith(".json") ? JSON_LINES : CSV;
+        }
+    }
+
+    public static final class Record {
+        private final String id;
+        private final ScheduleData schedule;
+
+        public Record(String id, ScheduleData schedule) {
+            this.id = id;
+            this.schedule = schedule;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public ScheduleData getSchedule() {
+            return schedule;
+        }
+    }
+
+    private static final String[] CLASS_KEYS = {"name", "level", "current", "target", "test", "difficulty"};
+    private static final String[] DAY_NAMES = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+
+    private ScheduleRecordCodec() {
+    }
+
+    /** True for a CSV header line, which starts with an {@code id} column. */
+    public static boolean isCsvHeader(String line) {
+        return line.regionMatches(true, 0, "id,", 0, 3) || line.equalsIgnoreCase("id");
+    }
+
+    public static Record parseCsv(String line, int classCount) {
+        String[] fields = splitCsv(line);
+        int classFields = classCount * ScheduleData.CLASS_ATTRIBUTES;
+        if (fields.length < 1 + classFields) {
+            throw new IllegalArgumentException("Expected " + (1 + classFields) + " or more columns, found " + fields.length);
+        }
+        ClassEntry[] classes = new ClassEntry[classCount];
+        for (int i = 0; i < classCount; i++) {
+            String[] row = new String[ScheduleData.CLASS_ATTRIBUTES];
+            System.arraycopy(fields, 1 + i * ScheduleData.CLASS_ATTRIBUTES, row, 0, row.length);
+            classes[i] = parseClass(row, i);
+        }
+        double[] minutes = new double[fields.length - 1 - classFields];
+        for (int day = 0; day < minutes.length; day++) {
+            minutes[day] = parseMinutes(fields[1 + classFields + day], day);
+        }
+        return new Record(fields[0], new ScheduleData(classes, minutes));
+    }
+
+    public static Record parseJson(String line) {
+        Object parsed = Json.parse(line);
+        if (!(parsed instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return fromJson((Map<?, ?>) parsed);
+    }
+
+    public static Record fromJson(Map<?, ?> object) {
+        Object id = object.get("id");
+        List<?> classValues = list(object.get("classes"), "classes");
+        ClassEntry[] classes = new ClassEntry[classValues.size()];
+        for (int i = 0; i < classes.length; i++) {
+            if (!(classValues.get(i) instanceof Map)) {
+                throw new IllegalArgumentException("Class " + (i + 1) + " must be an object");
+            }
+            Map<?, ?> value = (Map<?, ?>) classValues.get(i);
+            String[] row = new String[CLASS_KEYS.length];
+            for (int field = 0; field < row.length; field++) {
+                row[field] = text(value.get(CLASS_KEYS[field]));
+            }
+            classes[i] = parseClass(row, i);
+        }
+        List<?> minuteValues = list(object.get("minutes"), "minutes");
+        double[] minutes = new double[minuteValues.size()];
+        for (int day = 0; day < minutes.length; day++) {
+            Object value = minuteValues.get(day);
+            if (!(value instanceof Double)) {
+                throw new IllegalArgumentException("Minutes for day " + (day + 1) + " must be a number");
+            }
+            minutes[day] = checkMinutes((Double) value, day);
+        }
+        return new Record(id == null ? "" : text(id), new ScheduleData(classes, minutes));
+    }
+
+    public static void appendCsvHeader(StringBuilder out, int dayCount) {
+        out.append("id,class,name,priority,ratio");
+        for (int day = 0; day < dayCount; day++) {
+            out.append(',').append(dayCount <= DAY_NAMES.length ? DAY_NAMES[day] : "day" + (day + 1));
+        }
+        out.append('\n');
+    }
+
+    /** Writes one line per class: id, class number, name, priority, ratio and whole minutes per day. */
+    public static void appendCsv(StringBuilder out, String id, ScheduleCalculator.ScheduleResult result) {
+        for (int i = 0; i < result.getClassCount(); i++) {
+            appendCsvField(out, id);
+            out.append(',').append(i + 1).append(',');
+            appendCsvField(out, result.getClassName(i));
+            out.append(',');
+            appendFixed(out, result.getPriority(i), 4);
+            out.append(',');
+            appendFixed(out, result.getRatio(i), 4);
+            for (int day = 0; day < result.getDayCount(); day++) {
+                out.append(',').append(Math.round(result.getMinutes(i, day)));
+            }
+            out.append('\n');
+        }
+    }
+
+    public static void appendJson(StringBuilder out, String id, ScheduleCalculator.ScheduleResult result) {
+        out.append("{\"id\":");
+        Json.appendString(out, id);
+        out.append(",\"totalMinutes\":");
+        appendFixed(out, result.getTotalMinutes(), 1);
+        out.append(",\"classes\":[");
+        for (int i = 0; i < result.getClassCount(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"name\":");
+            Json.appendString(out, result.getClassName(i));
+            out.append(",\"priority\":");
+            appendFixed(out, result.getPriority(i), 4);
+            out.append(",\"ratio\":");
+            appendFixed(out, result.getRatio(i), 4);
+            out.append(",\"minutes\":[");
+            for (int day = 0; day < result.getDayCount(); day++) {
+                if (day > 0) {
+                    out.append(',');
+                }
+                out.append(Math.round(result.getMinutes(i, day)));
+            }
+            out.append("]}");
+        }
+        out.append("]}");
+    }
+
+    /** Writes a record in the JSON input form, so it can be read back with {@link #parseJson}. */
+    public static void appendRecordJson(StringBuilder out, String id, ScheduleData schedule) {
+        out.append("{\"id\":");
+        Json.appendString(out, id);
+        out.append(",\"classes\":[");
+        for (int i = 0; i < schedule.getClassCount(); i++) {
+            ClassEntry entry = schedule.getClassEntry(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"name\":");
+            Json.appendString(out, entry.getName());
+            out.append(",\"level\":");
+            Json.appendString(out, entry.getLevel().getLabel());
+            out.append(",\"current\":");
+            appendGrade(out, entry.getCurrentGrade());
+            out.append(",\"target\":");
+            appendGrade(out, entry.getTargetGrade());
+            out.append(",\"test\":").append(entry.isTestUpcoming());
+            out.append(",\"difficulty\":");
+            Json.appendString(out, entry.getDifficulty().getLabel());
+            out.append('}');
+        }
+        out.append("],\"minutes\":[");
+        for (int day = 0; day < schedule.getDayCount(); day++) {
+            if (day > 0) {
+                out.append(',');
+            }
+            appendExact(out, schedule.getMinutes(day));
+        }
+        out.append("]}");
+    }
+
+    // Whole numbers without a fraction, anything else in the round-trip form of Double.toString.
+    private static void appendExact(StringBuilder out, double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    public static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+
+    private static ClassEntry parseClass(String[] row, int index) {
+        try {
+            return ClassEntry.parseStrict(row);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Class " + (index + 1) + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static double parseMinutes(String value, int day) {
+        if (value.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return checkMinutes(Double.parseDouble(value), day);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Minutes for day " + (day + 1) + " must be a number: " + value);
+        }
+    }
+
+    private static double checkMinutes(double minutes, int day) {
+        if (!(minutes >= 0.0) || Double.isInfinite(minutes)) {
+            throw new IllegalArgumentException("Minutes for day " + (day + 1) + " must be zero or more: " + minutes);
+        }
+        return minutes;
+    }
+
+    private static List<?> list(Object value, String name) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be an array");
+        }
+        return (List<?>) value;
+    }
+
+    // JSON numbers and booleans are accepted wherever the CSV form would have text.
+    private static String text(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "Yes" : "No";
+        }
+        if (value instanceof Double) {
+            double number = (Double) value;
+            return number == Math.rint(number) ? Long.toString((long) number) : value.toString();
+        }
+        return value.toString();
+    }
+
+    private static void appendGrade(StringBuilder out, byte grade) {
+        if (grade >= ClassEntry.MIN_GRADE) {
+            out.append(grade);
+        } else {
+            out.append("null");
+        }
+    }
+
+    private static void appendCsvField(StringBuilder out, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            out.append(value);
+            return;
+        }
+        out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // Formats without String.format, which dominates the cost of writing large batches.
+    static void appendFixed(StringBuilder out, double value, int decimals) {
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            out.append('-');
+        }
+        out.append(scaled / scale);
+        if (decimals > 0) {
+            out.append('.');
+            String fraction = Long.toString(scaled % scale);
+            for (int i = fraction.length(); i < decimals; i++) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+    }
+}
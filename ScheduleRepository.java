@@ -0,0 +1,14 @@
+import java.io.IOException;
+import java.util.Map;
+
+public interface ScheduleRepository extends AutoCloseable {
+
+    void save(String profileId, ScheduleData schedule) throws IOException;
+
+    void saveAll(Map<String, ScheduleData> schedules) throws IOException;
+
+    ScheduleData load(String profileId) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of calculated schedules keyed by the content of the {@link ScheduleData} and the
+ * {@link WeightProfile} it was scored with, so showing the same schedule again costs a lookup instead
+ * of a calculation. A result from an older profile counts as a miss and is replaced.
+ */
+public final class ScheduleResultCache {
+
+    private final int capacity;
+    private final LinkedHashMap<ScheduleData, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ScheduleResultCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<ScheduleData, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ScheduleData, Entry> eldest) {
+                if (size() > ScheduleResultCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public ScheduleCalculator.ScheduleResult get(ScheduleData schedule) {
+        WeightProfile profile = WeightProfile.current();
+        synchronized (entries) {
+            Entry cached = entries.get(schedule);
+            if (cached != null && cached.profile.equals(profile)) {
+                hits.increment();
+                return cached.result;
+            }
+        }
+        misses.increment();
+        ScheduleCalculator.ScheduleResult result = ScheduleCalculator.calculate(schedule, profile);
+        synchronized (entries) {
+            Entry raced = entries.get(schedule);
+            if (raced != null && raced.profile.equals(profile)) {
+                return raced.result;
+            }
+            entries.put(schedule, new Entry(profile, result));
+            return result;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+        private final WeightProfile profile;
+        private final ScheduleCalculator.ScheduleResult result;
+
+        private Entry(WeightProfile profile, ScheduleCalculator.ScheduleResult result) {
+            this.profile = profile;
+            this.result = result;
+        }
+    }
+}
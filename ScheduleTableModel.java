@@ -0,0 +1,105 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table model over a {@link ScheduleCalculator.ScheduleResult}. Cells are formatted on
+ * demand straight from the result, so nothing is copied when a schedule is shown and only the rows
+ * that are painted are ever formatted. Replacing the result fires one event: a structure change when
+ * the number of days changes, otherwise a single data change, or per-cell updates when the caller
+ * knows which cells changed.
+ */
+public final class ScheduleTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    // Above this many changed cells a single rows-updated event is cheaper than one event per cell.
+    private static final int CELL_EVENT_LIMIT = 32;
+
+    private ScheduleCalculator.ScheduleResult result;
+    private String[] columnNames = ScheduleCalculator.COLUMN_NAMES;
+
+    public ScheduleCalculator.ScheduleResult getResult() {
+        return result;
+    }
+
+    public void setResult(ScheduleCalculator.ScheduleResult updated) {
+        long start = ScheduleMetrics.start();
+        replaceResult(updated);
+        ScheduleMetrics.TABLE_UPDATE.stop(start);
+    }
+
+    private void replaceResult(ScheduleCalculator.ScheduleResult updated) {
+        ScheduleCalculator.ScheduleResult previous = result;
+        if (updated == previous) {
+            return;
+        }
+        result = updated;
+        if (updated == null) {
+            if (previous != null && previous.getClassCount() > 0) {
+                fireTableDataChanged();
+            }
+            return;
+        }
+        if (updated.getDayCount() + 1 != columnNames.length) {
+            columnNames = ScheduleCalculator.columnNames(updated.getDayCount());
+            fireTableStructureChanged();
+            return;
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Replaces the result and fires events only for the cells in {@code changes}, which must describe
+     * the difference between the current result and {@code updated}.
+     */
+    public void setResult(ScheduleCalculator.ScheduleResult updated, IncrementalSchedule.CellChanges changes) {
+        long start = ScheduleMetrics.start();
+        if (changes == null || changes.isStructural() || result == null || updated == null
+                || updated.getClassCount() != result.getClassCount()
+                || updated.getDayCount() != result.getDayCount()) {
+            replaceResult(updated);
+        } else {
+            updateCells(updated, changes);
+        }
+        ScheduleMetrics.TABLE_UPDATE.stop(start);
+    }
+
+    private void updateCells(ScheduleCalculator.ScheduleResult updated, IncrementalSchedule.CellChanges changes) {
+        result = updated;
+        if (changes.isEmpty()) {
+            return;
+        }
+        int[][] cells = changes.toCells();
+        if (cells.length > CELL_EVENT_LIMIT) {
+            fireTableRowsUpdated(cells[0][0], cells[cells.length - 1][0]);
+            return;
+        }
+        for (int[] cell : cells) {
+            fireTableCellUpdated(cell[0], cell[1]);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return result == null ? 0 : result.getClassCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return result.getValueAt(row, column);
+    }
+}
@@ -1,17 +1,45 @@
 import java.awt.Font;
+import java.awt.event.MouseEvent;
+import java.util.Locale;
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
 
 public final class ScheduleTableUtil {
 
     private static final int[] COLUMN_WIDTHS = {180, 150, 150, 150, 150, 150, 150, 150};
-    private static final DefaultTableCellRenderer CELL_RENDERER = new TooltipCellRenderer();
+    private static final DefaultTableCellRenderer CELL_RENDERER = new DefaultTableCellRenderer();
 
     private ScheduleTableUtil() {
     }
 
+    /**
+     * Creates a configured table whose tooltips are built only when the pointer rests on a cell, so
+     * painting and scrolling never touch tooltip text. Cells of a {@link ScheduleTableModel} explain
+     * how their minutes were derived.
+     */
+    public static JTable createTable(TableModel model) {
+        JTable table = new JTable(model) {
+            @Override
+            public String getToolTipText(MouseEvent event) {
+                int row = rowAtPoint(event.getPoint());
+                int column = columnAtPoint(event.getPoint());
+                if (row < 0 || column < 0) {
+                    return null;
+                }
+                return describeCell(getModel(), convertRowIndexToModel(row), convertColumnIndexToModel(column));
+            }
+        };
+        configure(table);
+        return table;
+    }
+
     public static void configure(JTable table) {
         table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         table.setRowHeight(38);
@@ -22,31 +50,74 @@ public final class ScheduleTableUtil {
 
         TableColumnModel columnModel = table.getColumnModel();
         for (int i = 0; i < columnModel.getColumnCount(); i++) {
-            TableColumn column = columnModel.getColumn(i);
-            int width = i < COLUMN_WIDTHS.length ? COLUMN_WIDTHS[i] : COLUMN_WIDTHS[COLUMN_WIDTHS.length - 1];
-            column.setPreferredWidth(width);
-            column.setMinWidth(width);
+            sizeColumn(columnModel.getColumn(i), i);
         }
+        columnModel.addColumnModelListener(new TableColumnModelListener() {
+            @Override
+            public void columnAdded(TableColumnModelEvent e) {
+                TableColumnModel model = (TableColumnModel) e.getSource();
+                sizeColumn(model.getColumn(e.getToIndex()), e.getToIndex());
+            }
+
+            @Override
+            public void columnRemoved(TableColumnModelEvent e) {
+            }
+
+            @Override
+            public void columnMoved(TableColumnModelEvent e) {
+            }
+
+            @Override
+            public void columnMarginChanged(ChangeEvent e) {
+            }
+
+            @Override
+            public void columnSelectionChanged(ListSelectionEvent e) {
+            }
+        });
 
         table.setDefaultRenderer(Object.class, CELL_RENDERER);
     }
 
-    private static class TooltipCellRenderer extends DefaultTableCellRenderer {
-        @Override
-        public java.awt.Component getTableCellRendererComponent(
-                JTable table,
-                Object value,
-                boolean isSelected,
-                boolean hasFocus,
-                int row,
-                int column) {
-            java.awt.Component component = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-            if (value != null) {
-                setToolTipText(value.toString());
-            } else {
-                setToolTipText(null);
+    private static void sizeColumn(TableColumn column, int index) {
+        int width = index < COLUMN_WIDTHS.length ? COLUMN_WIDTHS[index] : COLUMN_WIDTHS[COLUMN_WIDTHS.length - 1];
+        column.setPreferredWidth(width);
+        column.setMinWidth(width);
+    }
+
+    static String describeCell(TableModel model, int row, int column) {
+        ScheduleCalculator.ScheduleResult result =
+                model instanceof ScheduleTableModel ? ((ScheduleTableModel) model).getResult() : null;
+        if (result == null) {
+            Object value = model.getValueAt(row, column);
+            return value != null ? value.toString() : null;
+        }
+
+        StringBuilder text = new StringBuilder("<html><b>").append(escape(result.getClassName(row))).append("</b>");
+        if (column > 0) {
+            int day = column - 1;
+            double dayMinutes = 0.0;
+            for (int i = 0; i < result.getClassCount(); i++) {
+                dayMinutes += result.getMinutes(i, day);
             }
-            return component;
+            DurationLabels labels = DurationLabels.current();
+            text.append(" on ").append(escape(ScheduleCalculator.columnNames(result.getDayCount())[column]))
+                    .append("<br>").append(labels.label(result.getMinutes(row, day)))
+                    .append(" of ").append(labels.label(dayMinutes))
+                    .append(String.format(Locale.US, " (%.0f%% of the day's study time)", result.getRatio(row) * 100.0));
         }
+
+        ScheduleCalculator.PriorityBreakdown breakdown = result.explainPriority(row);
+        text.append(String.format(Locale.US,
+                "<br>Priority %.2f, %.0f%% of the total"
+                        + "<br>Base %.2f + level %.2f + grades %.2f + test %.2f + difficulty %.2f</html>",
+                result.getPriority(row), result.getRatio(row) * 100.0,
+                breakdown.getBase(), breakdown.getLevel(), breakdown.getGrade(),
+                breakdown.getTest(), breakdown.getDifficulty()));
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
     }
 }
\ No newline at end of file
@@ -0,0 +1,405 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Places a calculated schedule into concrete study blocks. Each day is 288 five-minute slots held as
+ * five {@code long} words, so availability, occupancy and each class's placement on a day are all
+ * small bitsets and checking or claiming a slot is a mask operation. Minutes are rounded to whole
+ * slots; each class is placed as one block in the first free run long enough for it, largest
+ * requests first, and split over the longest remaining runs when no single run fits.
+ *
+ * <p>The timetable is mutable so that one edited cell can be re-placed with
+ * {@link #setMinutes(int, int, double)} without disturbing the rest of the day.
+ */
+public final class ScheduleTimetable {
+
+    public static final int SLOT_MINUTES = 5;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    private static final int WORDS_PER_DAY = (SLOTS_PER_DAY + 63) / 64;
+
+    /** Free time per day: a window with busy periods removed. Immutable; the {@code with} methods return a copy. */
+    public static final class Availability {
+        private final int dayCount;
+        private final long[] free;
+
+        private Availability(int dayCount, long[] free) {
+            this.dayCount = dayCount;
+            this.free = free;
+        }
+
+        /** The same window, in minutes after midnight, on every day. */
+        public static Availability daily(int dayCount, int fromMinute, int toMinute) {
+            if (dayCount < 0) {
+                throw new IllegalArgumentException("Day count cannot be negative: " + dayCount);
+            }
+            long[] free = new long[dayCount * WORDS_PER_DAY];
+            for (int day = 0; day < dayCount; day++) {
+                setRange(free, day * WORDS_PER_DAY, firstSlot(fromMinute), endSlot(toMinute, fromMinute));
+            }
+            return new Availability(dayCount, free);
+        }
+
+        public Availability withWindow(int day, int fromMinute, int toMinute) {
+            checkDay(day);
+            long[] copy = free.clone();
+            Arrays.fill(copy, day * WORDS_PER_DAY, (day + 1) * WORDS_PER_DAY, 0L);
+            setRange(copy, day * WORDS_PER_DAY, firstSlot(fromMinute), endSlot(toMinute, fromMinute));
+            return new Availability(dayCount, copy);
+        }
+
+        /** Removes a busy period; any slot it touches becomes unavailable. */
+        public Availability withBusy(int day, int fromMinute, int toMinute) {
+            checkDay(day);
+            long[] copy = free.clone();
+            endSlot(toMinute, checkMinute(fromMinute));
+            clearRange(copy, day * WORDS_PER_DAY, fromMinute / SLOT_MINUTES, (toMinute + SLOT_MINUTES - 1) / SLOT_MINUTES);
+            return new Availability(dayCount, copy);
+        }
+
+        public int getDayCount() {
+            return dayCount;
+        }
+
+        public boolean isFree(int day, int minute) {
+            checkDay(day);
+            return isSet(free, day * WORDS_PER_DAY, checkMinute(minute) / SLOT_MINUTES);
+        }
+
+        public int getFreeMinutes(int day) {
+            checkDay(day);
+            return countSet(free, day * WORDS_PER_DAY) * SLOT_MINUTES;
+        }
+
+        private void checkDay(int day) {
+            if (day < 0 || day >= dayCount) {
+                throw new IllegalArgumentException("Day " + day + " is outside 0.." + (dayCount - 1));
+            }
+        }
+
+        // Partial slots at the start of a window are not usable.
+        private static int firstSlot(int minute) {
+            return (checkMinute(minute) + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        }
+
+        private static int endSlot(int toMinute, int fromMinute) {
+            if (checkMinute(toMinute) <= fromMinute) {
+                throw new IllegalArgumentException("Period must end after it starts: " + fromMinute + "-" + toMinute);
+            }
+            return toMinute / SLOT_MINUTES;
+        }
+
+        private static int checkMinute(int minute) {
+            if (minute < 0 || minute > 24 * 60) {
+                throw new IllegalArgumentException("Minute of day must be 0 to 1440: " + minute);
+            }
+            return minute;
+        }
+    }
+
+    public static final class Block {
+        private final int classIndex;
+        private final String className;
+        private final int day;
+        private final int startMinute;
+        private final int endMinute;
+
+        private Block(int classIndex, String className, int day, int startMinute, int endMinute) {
+            this.classIndex = classIndex;
+            this.className = className;
+            this.day = day;
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+        }
+
+        public int getClassIndex() {
+            return classIndex;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public int getDay() {
+            return day;
+        }
+
+        public int getStartMinute() {
+            return startMinute;
+        }
+
+        public int getEndMinute() {
+            return endMinute;
+        }
+
+        public int getMinutes() {
+            return endMinute - startMinute;
+        }
+
+        @Override
+        public String toString() {
+            return formatTime(startMinute) + "-" + formatTime(endMinute) + " " + className;
+        }
+    }
+
+    private final int classCount;
+    private final int dayCount;
+    private final String[] classNames;
+    private final long[] free;
+    private final long[] used;
+    // Slots held by each class on each day, at ((class * dayCount) + day) * WORDS_PER_DAY.
+    private final long[] classSlots;
+    private final int[] requested;
+    private final long[] open = new long[WORDS_PER_DAY];
+
+    private ScheduleTimetable(ScheduleCalculator.ScheduleResult result, Availability availability) {
+        this.classCount = result.getClassCount();
+        this.dayCount = result.getDayCount();
+        this.classNames = new String[classCount];
+        for (int c = 0; c < classCount; c++) {
+            classNames[c] = result.getClassName(c);
+        }
+        this.free = availability.free;
+        this.used = new long[dayCount * WORDS_PER_DAY];
+        this.classSlots = new long[classCount * dayCount * WORDS_PER_DAY];
+        this.requested = new int[classCount * dayCount];
+    }
+
+    /** Places every class on every day. Days the availability does not cover have no free time. */
+    public static ScheduleTimetable place(ScheduleCalculator.ScheduleResult result, Availability availability) {
+        Availability covered = availability;
+        if (availability.dayCount < result.getDayCount()) {
+            covered = new Availability(result.getDayCount(),
+                    Arrays.copyOf(availability.free, result.getDayCount() * WORDS_PER_DAY));
+        }
+        ScheduleTimetable timetable = new ScheduleTimetable(result, covered);
+        Integer[] order = new Integer[timetable.classCount];
+        for (int day = 0; day < timetable.dayCount; day++) {
+            for (int c = 0; c < timetable.classCount; c++) {
+                timetable.requested[c * timetable.dayCount + day] = toSlots(result.getMinutes(c, day));
+                order[c] = c;
+            }
+            int current = day;
+            Arrays.sort(order, (a, b) -> Integer.compare(
+                    timetable.requested[b * timetable.dayCount + current], timetable.requested[a * timetable.dayCount + current]));
+            for (int c : order) {
+                timetable.placeClass(c, day);
+            }
+        }
+        return timetable;
+    }
+
+    public static List<ScheduleTimetable> placeAll(Collection<ScheduleCalculator.ScheduleResult> results, Availability availability) {
+        if (results == null || results.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ScheduleTimetable> timetables = new ArrayList<>(results.size());
+        for (ScheduleCalculator.ScheduleResult result : results) {
+            timetables.add(place(result, availability));
+        }
+        return Collections.unmodifiableList(timetables);
+    }
+
+    /**
+     * Re-places one class on one day after an edit. Only that class's slots are released and claimed
+     * again; other classes keep their blocks. Returns the minutes that could not be placed.
+     */
+    public int setMinutes(int classIndex, int day, double minutes) {
+        int base = slotBase(classIndex, day);
+        int dayBase = day * WORDS_PER_DAY;
+        for (int w = 0; w < WORDS_PER_DAY; w++) {
+            used[dayBase + w] &= ~classSlots[base + w];
+            classSlots[base + w] = 0L;
+        }
+        requested[classIndex * dayCount + day] = toSlots(minutes);
+        placeClass(classIndex, day);
+        return getUnplacedMinutes(classIndex, day);
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    public int getPlacedMinutes(int classIndex, int day) {
+        return countSet(classSlots, slotBase(classIndex, day)) * SLOT_MINUTES;
+    }
+
+    /** Minutes requested for the class on the day, after rounding to slots, that did not fit. */
+    public int getUnplacedMinutes(int classIndex, int day) {
+        return requested[classIndex * dayCount + day] * SLOT_MINUTES - getPlacedMinutes(classIndex, day);
+    }
+
+    public int getFreeMinutes(int day) {
+        int base = day * WORDS_PER_DAY;
+        int slots = 0;
+        for (int w = 0; w < WORDS_PER_DAY; w++) {
+            slots += Long.bitCount(free[base + w] & ~used[base + w]);
+        }
+        return slots * SLOT_MINUTES;
+    }
+
+    /** The class holding the slot that contains {@code minute}, or -1 when it is free or unavailable. */
+    public int getClassAt(int day, int minute) {
+        int slot = minute / SLOT_MINUTES;
+        if (!isSet(used, day * WORDS_PER_DAY, slot)) {
+            return -1;
+        }
+        for (int c = 0; c < classCount; c++) {
+            if (isSet(classSlots, slotBase(c, day), slot)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /** The blocks on one day in start order. */
+    public List<Block> getBlocks(int day) {
+        List<Block> blocks = new ArrayList<>();
+        for (int c = 0; c < classCount; c++) {
+            int base = slotBase(c, day);
+            int start = nextSet(classSlots, base, 0);
+            while (start < SLOTS_PER_DAY) {
+                int end = nextClear(classSlots, base, start);
+                blocks.add(new Block(c, classNames[c], day, start * SLOT_MINUTES, end * SLOT_MINUTES));
+                start = nextSet(classSlots, base, end);
+            }
+        }
+        blocks.sort((a, b) -> Integer.compare(a.startMinute, b.startMinute));
+        return blocks;
+    }
+
+    public static String formatTime(int minute) {
+        int hours = minute / 60;
+        int minutes = minute % 60;
+        return (hours < 10 ? "0" : "") + hours + (minutes < 10 ? ":0" : ":") + minutes;
+    }
+
+    private void placeClass(int classIndex, int day) {
+        int needed = requested[classIndex * dayCount + day];
+        if (needed == 0) {
+            return;
+        }
+        int dayBase = day * WORDS_PER_DAY;
+        for (int w = 0; w < WORDS_PER_DAY; w++) {
+            open[w] = free[dayBase + w] & ~used[dayBase + w];
+        }
+        int start = nextSet(open, 0, 0);
+        int longestStart = -1;
+        int longestLength = 0;
+        while (start < SLOTS_PER_DAY) {
+            int end = nextClear(open, 0, start);
+            if (end - start >= needed) {
+                claim(classIndex, day, start, start + needed);
+                return;
+            }
+            if (end - start > longestLength) {
+                longestStart = start;
+                longestLength = end - start;
+            }
+            start = nextSet(open, 0, end);
+        }
+        // No single run fits: fill the longest runs until the request is met or the day is full.
+        while (needed > 0 && longestLength > 0) {
+            int take = Math.min(needed, longestLength);
+            claim(classIndex, day, longestStart, longestStart + take);
+            clearRange(open, 0, longestStart, longestStart + take);
+            needed -= take;
+            longestLength = 0;
+            start = nextSet(open, 0, 0);
+            while (start < SLOTS_PER_DAY) {
+                int end = nextClear(open, 0, start);
+                if (end - start > longestLength) {
+                    longestStart = start;
+                    longestLength = end - start;
+                }
+                start = nextSet(open, 0, end);
+            }
+        }
+    }
+
+    private void claim(int classIndex, int day, int fromSlot, int toSlot) {
+        setRange(used, day * WORDS_PER_DAY, fromSlot, toSlot);
+        setRange(classSlots, slotBase(classIndex, day), fromSlot, toSlot);
+    }
+
+    private int slotBase(int classIndex, int day) {
+        return (classIndex * dayCount + day) * WORDS_PER_DAY;
+    }
+
+    private static int toSlots(double minutes) {
+        return minutes > 0.0 ? (int) Math.min(SLOTS_PER_DAY, Math.round(minutes / SLOT_MINUTES)) : 0;
+    }
+
+    private static boolean isSet(long[] bits, int base, int slot) {
+        return (bits[base + (slot >>> 6)] & (1L << slot)) != 0;
+    }
+
+    private static int countSet(long[] bits, int base) {
+        int count = 0;
+        for (int w = 0; w < WORDS_PER_DAY; w++) {
+            count += Long.bitCount(bits[base + w]);
+        }
+        return count;
+    }
+
+    private static int nextSet(long[] bits, int base, int from) {
+        int w = from >>> 6;
+        if (w >= WORDS_PER_DAY) {
+            return SLOTS_PER_DAY;
+        }
+        long word = bits[base + w] & (-1L << from);
+        while (word == 0) {
+            if (++w == WORDS_PER_DAY) {
+                return SLOTS_PER_DAY;
+            }
+            word = bits[base + w];
+        }
+        return Math.min(SLOTS_PER_DAY, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    private static int nextClear(long[] bits, int base, int from) {
+        int w = from >>> 6;
+        if (w >= WORDS_PER_DAY) {
+            return SLOTS_PER_DAY;
+        }
+        long word = ~bits[base + w] & (-1L << from);
+        while (word == 0) {
+            if (++w == WORDS_PER_DAY) {
+                return SLOTS_PER_DAY;
+            }
+            word = ~bits[base + w];
+        }
+        return Math.min(SLOTS_PER_DAY, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    private static void setRange(long[] bits, int base, int fromSlot, int toSlot) {
+        for (int slot = fromSlot; slot < toSlot; ) {
+            int w = slot >>> 6;
+            int end = Math.min(toSlot, (w + 1) << 6);
+            bits[base + w] |= rangeMask(slot, end);
+            slot = end;
+        }
+    }
+
+    private static void clearRange(long[] bits, int base, int fromSlot, int toSlot) {
+        for (int slot = fromSlot; slot < toSlot; ) {
+            int w = slot >>> 6;
+            int end = Math.min(toSlot, (w + 1) << 6);
+            bits[base + w] &= ~rangeMask(slot, end);
+            slot = end;
+        }
+    }
+
+    // Bits [from, to) of the word containing them; to may be the next word's first bit.
+    private static long rangeMask(int from, int to) {
+        long upper = (to & 63) == 0 ? -1L : (1L << to) - 1;
+        return upper & (-1L << from);
+    }
+}
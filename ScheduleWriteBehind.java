@@ -0,0 +1,354 @@
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Saves schedules on a background thread. Saves for a profile that is already waiting replace the
+ * waiting copy, pending profiles are written in batches through {@link ScheduleRepository#saveAll},
+ * and {@link #submit} blocks only when {@code capacity} distinct profiles are already waiting or
+ * being written.
+ *
+ * <p>A batch that fails to save goes back into the queue, except for profiles that were saved again
+ * in the meantime, and is retried after a delay that doubles up to {@link #MAX_RETRY_DELAY_MILLIS}.
+ * After {@link #MAX_ATTEMPTS} failed attempts, or once the writer is closed, the batch is reported
+ * and dropped, so neither {@link #flush} nor closing waits forever on a store that stays
+ * unavailable. The error handler hears about the first failure of a run and about every drop.
+ */
+public final class ScheduleWriteBehind implements AutoCloseable {
+
+    static final long FIRST_RETRY_DELAY_MILLIS = 500;
+    static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+    static final int MAX_ATTEMPTS = 5;
+
+    private final Callable<? extends ScheduleRepository> opener;
+    private final int capacity;
+    private final int maxBatch;
+    private final Consumer<IOException> errorHandler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final Map<String, ScheduleData> pending = new LinkedHashMap<>();
+    private int inFlight;
+    private boolean closed;
+    private long droppedBatches;
+    private IOException lastDropped;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread worker;
+    private ScheduleRepository repository;
+
+    public ScheduleWriteBehind(
+            Callable<? extends ScheduleRepository> opener,
+            int capacity,
+            int maxBatch,
+            Consumer<IOException> errorHandler) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        this.opener = opener;
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.errorHandler = errorHandler;
+        this.worker = new Thread(this::run, "schedule-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public static ScheduleWriteBehind forRepository(ScheduleRepository repository, int capacity, int maxBatch,
+                                                    Consumer<IOException> errorHandler) {
+        return new ScheduleWriteBehind(() -> repository, capacity, maxBatch, errorHandler);
+    }
+
+    public void submit(String profileId, ScheduleData schedule) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed && !pending.containsKey(profileId) && pending.size() + inFlight >= capacity) {
+                notFull.await();
+            }
+            enqueue(profileId, schedule);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean offer(String profileId, ScheduleData schedule, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!closed && !pending.containsKey(profileId) && pending.size() + inFlight >= capacity) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            enqueue(profileId, schedule);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Waits until the queue is empty, failing if a batch had to be dropped in the meantime. */
+    public void flush() throws InterruptedException, IOException {
+        lock.lock();
+        try {
+            long droppedBefore = droppedBatches;
+            while (!pending.isEmpty() || inFlight > 0) {
+                idle.await();
+            }
+            checkDropped(droppedBefore);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean awaitFlush(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            long droppedBefore = droppedBatches;
+            while (!pending.isEmpty() || inFlight > 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+            checkDropped(droppedBefore);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Stops accepting saves, writes what is already queued and closes the repository. */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        worker.join(Math.max(1, unit.toMillis(timeout)));
+        return !worker.isAlive();
+    }
+
+    @Override
+    public void close() {
+        try {
+            close(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkDropped(long droppedBefore) throws IOException {
+        long count = droppedBatches - droppedBefore;
+        if (count > 0) {
+            throw new IOException(count + " schedule batch(es) could not be saved", lastDropped);
+        }
+    }
+
+    private void enqueue(String profileId, ScheduleData schedule) {
+        if (closed) {
+            throw new IllegalStateException("Schedule writer is closed");
+        }
+        submitted.incrementAndGet();
+        if (pending.put(profileId, schedule) != null) {
+            coalesced.incrementAndGet();
+        }
+        notEmpty.signal();
+    }
+
+    private void run() {
+        long retryDelay = 0;
+        int attempts = 0;
+        try {
+            while (true) {
+                if (retryDelay > 0) {
+                    pauseForRetry(retryDelay);
+                }
+                Map<String, ScheduleData> batch = takeBatch();
+                if (batch == null) {
+                    break;
+                }
+                IOException failure = null;
+                boolean drop = false;
+                try {
+                    failure = write(batch);
+                } finally {
+                    lock.lock();
+                    try {
+                        if (failure != null) {
+                            attempts++;
+                            drop = closed || attempts >= MAX_ATTEMPTS;
+                            if (drop) {
+                                droppedBatches++;
+                                lastDropped = failure;
+                                dropped.incrementAndGet();
+                            } else {
+                                requeue(batch);
+                            }
+                        }
+                        inFlight = 0;
+                        notFull.signalAll();
+                        if (pending.isEmpty()) {
+                            idle.signalAll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                if (failure == null || drop) {
+                    if (failure != null && errorHandler != null) {
+                        errorHandler.accept(failure);
+                    }
+                    attempts = 0;
+                    retryDelay = 0;
+                } else {
+                    if (retryDelay == 0 && errorHandler != null) {
+                        errorHandler.accept(failure);
+                    }
+                    retryDelay = retryDelay == 0 ? FIRST_RETRY_DELAY_MILLIS : Math.min(MAX_RETRY_DELAY_MILLIS, retryDelay * 2);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeRepository();
+            lock.lock();
+            try {
+                pending.clear();
+                idle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Map<String, ScheduleData> takeBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            Map<String, ScheduleData> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, ScheduleData>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatch) {
+                Map.Entry<String, ScheduleData> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            inFlight = batch.size();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Puts a failed batch back ahead of newer work, skipping profiles that were saved again meanwhile.
+    // The batch was counted against the capacity while in flight, so the queue never outgrows it.
+    private void requeue(Map<String, ScheduleData> batch) {
+        Map<String, ScheduleData> newer = new LinkedHashMap<>(pending);
+        pending.clear();
+        for (Map.Entry<String, ScheduleData> entry : batch.entrySet()) {
+            if (!newer.containsKey(entry.getKey())) {
+                pending.put(entry.getKey(), entry.getValue());
+            }
+        }
+        pending.putAll(newer);
+    }
+
+    private void pauseForRetry(long delayMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            while (!closed && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the failure, or null when the batch was saved.
+    private IOException write(Map<String, ScheduleData> batch) {
+        try {
+            if (repository == null) {
+                repository = opener.call();
+            }
+            repository.saveAll(batch);
+            batches.incrementAndGet();
+            written.addAndGet(batch.size());
+            return null;
+        } catch (Exception ex) {
+            failures.incrementAndGet();
+            return ex instanceof IOException ? (IOException) ex : new IOException(ex);
+        }
+    }
+
+    private void closeRepository() {
+        if (repository == null) {
+            return;
+        }
+        try {
+            repository.close();
+        } catch (IOException ex) {
+            if (errorHandler != null) {
+                errorHandler.accept(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import javax.swing.AbstractButton;
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Frame;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records how long the app takes to reach each startup milestone, measured from JVM start. Marks
+ * are ignored unless {@code -Dschedule.startup.timing=true} is set, in which case each milestone is
+ * printed to standard error the first time it is reached.
+ *
+ * <p>{@link #main} is a harness that launches the app through {@link Menu#main}, clicks "Create new
+ * schedule" once the menu has painted, prints the totals and exits, so cold start and first wizard
+ * open can be compared run to run.
+ */
+public final class StartupTiming {
+
+    static final String ENABLED_PROPERTY = "schedule.startup.timing";
+
+    private static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    // JVM uptime is only millisecond accurate, so it anchors a nanoTime clock taken at the same moment.
+    private static final long ORIGIN_NANOS = System.nanoTime()
+            - ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000L;
+    private static final Map<String, Long> MARKS = new LinkedHashMap<>();
+
+    private static final String CREATE_BUTTON_TEXT = "Create new schedule";
+
+    private static Runnable listener;
+
+    private StartupTiming() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static void mark(String milestone) {
+        if (!ENABLED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - ORIGIN_NANOS;
+        Runnable notify;
+        synchronized (MARKS) {
+            if (MARKS.putIfAbsent(milestone, elapsed) != null) {
+                return;
+            }
+            notify = listener;
+        }
+        System.err.printf(Locale.US, "startup %-24s %9.1f ms%n", milestone, elapsed / 1e6);
+        if (notify != null) {
+            notify.run();
+        }
+    }
+
+    /** Marks {@code milestone} once the component has been shown and its first repaint has completed. */
+    public static void markAfterPaint(JComponent component, String milestone) {
+        if (!ENABLED) {
+            return;
+        }
+        component.addHierarchyListener(new HierarchyListener() {
+            @Override
+            public void hierarchyChanged(HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0 || !component.isShowing()) {
+                    return;
+                }
+                component.removeHierarchyListener(this);
+                SwingUtilities.invokeLater(() -> {
+                    RepaintManager.currentManager(component).paintDirtyRegions();
+                    mark(milestone);
+                });
+            }
+        });
+    }
+
+    static boolean hasMark(String milestone) {
+        synchronized (MARKS) {
+            return MARKS.containsKey(milestone);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!ENABLED) {
+            System.err.println("Run with -D" + ENABLED_PROPERTY + "=true so the app's own classes are timed.");
+            System.exit(2);
+        }
+        Object done = new Object();
+        synchronized (MARKS) {
+            listener = () -> {
+                synchronized (done) {
+                    done.notifyAll();
+                }
+            };
+        }
+        Menu.main(args);
+        awaitMark(done, "first-paint");
+        SwingUtilities.invokeAndWait(() -> {
+            AbstractButton button = findButton(Frame.getFrames(), CREATE_BUTTON_TEXT);
+            if (button == null) {
+                throw new IllegalStateException("No \"" + CREATE_BUTTON_TEXT + "\" button on screen");
+            }
+            button.doClick();
+        });
+        awaitMark(done, "wizard-first-paint");
+
+        synchronized (MARKS) {
+            Long opened = MARKS.get("wizard-open");
+            Long painted = MARKS.get("wizard-first-paint");
+            Long firstPaint = MARKS.get("first-paint");
+            System.out.printf(Locale.US, "cold start to first paint  %9.1f ms%n", firstPaint / 1e6);
+            if (opened != null) {
+                System.out.printf(Locale.US, "wizard open to first paint %9.1f ms%n", (painted - opened) / 1e6);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static AbstractButton findButton(Component[] components, String text) {
+        for (Component component : components) {
+            if (component instanceof AbstractButton && text.equals(((AbstractButton) component).getText())) {
+                return (AbstractButton) component;
+            }
+            if (component instanceof Container) {
+                AbstractButton found = findButton(((Container) component).getComponents(), text);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void awaitMark(Object done, String milestone) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        synchronized (done) {
+            while (!hasMark(milestone)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Timed out waiting for " + milestone);
+                }
+                done.wait(remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The weights that make up a class's priority. A profile is immutable and is compiled when it is
+ * created into lookup tables indexed by level, by current and target grade, by the test flag and by
+ * difficulty, so scoring a class is four array reads and a few additions.
+ *
+ * <p>The profile in use is swapped atomically by {@link #use}; a calculation or batch reads
+ * {@link #current()} once, scores every class with that profile and keeps it in the result, which
+ * explains its priorities with the same profile. A reload never waits for calculations in
+ * progress.
+ *
+ * <p>Profiles load from a properties file with the keys below; missing keys keep their default.
+ * {@code -Dschedule.weights=path} loads one at startup and {@link #watch} reloads it when the file
+ * changes.
+ *
+ * <pre>
+ * name=Exam season
+ * base=1.0
+ * level.hl=0.7
+ * level.sl=0.2
+ * test=0.8
+ * grade.unknown=0.25
+ * grade.maintain=0.15
+ * grade.gap=0.35
+ * grade.gap.max=3
+ * difficulty.very_hard=1.0
+ * difficulty.hard=0.7
+ * difficulty.average=0.45
+ * difficulty.easy=0.25
+ * difficulty.default=0.1
+ * </pre>
+ */
+public final class WeightProfile {
+
+    public static final String PATH_PROPERTY = "schedule.weights";
+
+    public static final WeightProfile DEFAULT = new WeightProfile(
+            "Default", 1.0, 0.7, 0.2, 0.8, 0.25, 0.15, 0.35, 3, 1.0, 0.7, 0.45, 0.25, 0.1);
+
+    // Grades run from INVALID_GRADE (-1) to MAX_GRADE, so a grade indexes the table at grade + 1.
+    private static final int GRADE_VALUES = ClassEntry.MAX_GRADE - ClassEntry.INVALID_GRADE + 1;
+    private static final double MINIMUM_PRIORITY_FACTOR = 0.25;
+
+    private static volatile WeightProfile current = DEFAULT;
+
+    private final String name;
+    private final double base;
+    private final double higherLevel;
+    private final double standardLevel;
+    private final double test;
+    private final double unknownGrade;
+    private final double maintainGrade;
+    private final double gradeGap;
+    private final int maxGradeGap;
+    private final double veryHard;
+    private final double hard;
+    private final double average;
+    private final double easy;
+    private final double otherDifficulty;
+
+    private final double[] levelTable = new double[ClassEntry.Level.values().length];
+    private final double[] gradeTable = new double[GRADE_VALUES * GRADE_VALUES];
+    private final double[] testTable = new double[2];
+    private final double[] difficultyTable = new double[ClassEntry.Difficulty.values().length];
+
+    private WeightProfile(String name, double base, double higherLevel, double standardLevel, double test,
+                          double unknownGrade, double maintainGrade, double gradeGap, int maxGradeGap,
+                          double veryHard, double hard, double average, double easy, double otherDifficulty) {
+        if (!(base > 0.0) || Double.isInfinite(base)) {
+            throw new IllegalArgumentException("base must be a positive number: " + base);
+        }
+        if (maxGradeGap < 0) {
+            throw new IllegalArgumentException("grade.gap.max cannot be negative: " + maxGradeGap);
+        }
+        this.name = name;
+        this.base = base;
+        this.higherLevel = higherLevel;
+        this.standardLevel = standardLevel;
+        this.test = test;
+        this.unknownGrade = unknownGrade;
+        this.maintainGrade = maintainGrade;
+        this.gradeGap = gradeGap;
+        this.maxGradeGap = maxGradeGap;
+        this.veryHard = veryHard;
+        this.hard = hard;
+        this.average = average;
+        this.easy = easy;
+        this.otherDifficulty = otherDifficulty;
+        compile();
+    }
+
+    public static WeightProfile current() {
+        return current;
+    }
+
+    public static void use(WeightProfile profile) {
+        current = profile != null ? profile : DEFAULT;
+    }
+
+    public static WeightProfile load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return fromProperties(properties);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(path + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    public static WeightProfile fromProperties(Properties properties) {
+        WeightProfile d = DEFAULT;
+        return new WeightProfile(
+                properties.getProperty("name", "Custom").trim(),
+                number(properties, "base", d.base),
+                number(properties, "level.hl", d.higherLevel),
+                number(properties, "level.sl", d.standardLevel),
+                number(properties, "test", d.test),
+                number(properties, "grade.unknown", d.unknownGrade),
+                number(properties, "grade.maintain", d.maintainGrade),
+                number(properties, "grade.gap", d.gradeGap),
+                wholeNumber(properties, "grade.gap.max", d.maxGradeGap),
+                number(properties, "difficulty.very_hard", d.veryHard),
+                number(properties, "difficulty.hard", d.hard),
+                number(properties, "difficulty.average", d.average),
+                number(properties, "difficulty.easy", d.easy),
+                number(properties, "difficulty.default", d.otherDifficulty));
+    }
+
+    /**
+     * Loads the profile named by {@code -Dschedule.weights} and makes it current. Does nothing when the
+     * property is not set; a profile that cannot be read is reported and the current one is kept.
+     * Returns the configured path, for {@link #watch}, or null when there is none.
+     */
+    public static Path useConfigured() {
+        String configured = System.getProperty(PATH_PROPERTY);
+        if (configured == null || configured.trim().isEmpty()) {
+            return null;
+        }
+        Path path = Paths.get(configured.trim());
+        try {
+            use(load(path));
+        } catch (IOException ex) {
+            System.err.println("Could not load weight profile " + ex.getMessage());
+        }
+        return path;
+    }
+
+    /**
+     * Reloads the profile whenever the file's modification time changes, on a daemon thread. A file that
+     * fails to load is reported and the previous profile stays in use. Shut the returned executor down
+     * to stop watching.
+     */
+    public static ScheduledExecutorService watch(Path path, long period, TimeUnit unit) {
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "weight-profile-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        FileTime[] seen = {modifiedTime(path)};
+        watcher.scheduleWithFixedDelay(() -> {
+            FileTime modified = modifiedTime(path);
+            if (modified == null || modified.equals(seen[0])) {
+                return;
+            }
+            seen[0] = modified;
+            try {
+                WeightProfile loaded = load(path);
+                use(loaded);
+                System.err.println("Loaded weight profile \"" + loaded.getName() + "\" from " + path);
+            } catch (IOException ex) {
+                System.err.println("Could not reload weight profile " + ex.getMessage());
+            }
+        }, period, period, unit);
+        return watcher;
+    }
+
+    public double score(ClassEntry entry) {
+        double priority = base;
+        priority += levelTable[entry.getLevel().ordinal()];
+        priority += gradeTable[(entry.getCurrentGrade() + 1) * GRADE_VALUES + entry.getTargetGrade() + 1];
+        priority += testTable[entry.isTestUpcoming() ? 1 : 0];
+        priority += difficultyTable[entry.getDifficulty().ordinal()];
+        return Math.max(priority, base * MINIMUM_PRIORITY_FACTOR);
+    }
+
+    public double getBase() {
+        return base;
+    }
+
+    public double getLevelWeight(ClassEntry.Level level) {
+        return levelTable[level.ordinal()];
+    }
+
+    public double getGradeWeight(byte currentGrade, byte targetGrade) {
+        return gradeTable[(currentGrade + 1) * GRADE_VALUES + targetGrade + 1];
+    }
+
+    public double getTestWeight() {
+        return test;
+    }
+
+    public double getDifficultyWeight(ClassEntry.Difficulty difficulty) {
+        return difficultyTable[difficulty.ordinal()];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof WeightProfile)) {
+            return false;
+        }
+        WeightProfile profile = (WeightProfile) other;
+        return base == profile.base
+                && maxGradeGap == profile.maxGradeGap
+                && Arrays.equals(levelTable, profile.levelTable)
+                && Arrays.equals(gradeTable, profile.gradeTable)
+                && Arrays.equals(testTable, profile.testTable)
+                && Arrays.equals(difficultyTable, profile.difficultyTable);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Double.hashCode(base);
+        hash = 31 * hash + Arrays.hashCode(levelTable);
+        hash = 31 * hash + Arrays.hashCode(gradeTable);
+        hash = 31 * hash + Arrays.hashCode(testTable);
+        return 31 * hash + Arrays.hashCode(difficultyTable);
+    }
+
+    @Override
+    public String toString() {
+        return "WeightProfile[" + name + "]";
+    }
+
+    private void compile() {
+        levelTable[ClassEntry.Level.HL.ordinal()] = higherLevel;
+        levelTable[ClassEntry.Level.SL.ordinal()] = standardLevel;
+
+        for (int currentGrade = ClassEntry.INVALID_GRADE; currentGrade <= ClassEntry.MAX_GRADE; currentGrade++) {
+            for (int targetGrade = ClassEntry.INVALID_GRADE; targetGrade <= ClassEntry.MAX_GRADE; targetGrade++) {
+                gradeTable[(currentGrade + 1) * GRADE_VALUES + targetGrade + 1] = gradeWeight(currentGrade, targetGrade);
+            }
+        }
+
+        testTable[1] = test;
+
+        for (ClassEntry.Difficulty difficulty : ClassEntry.Difficulty.values()) {
+            difficultyTable[difficulty.ordinal()] = difficultyWeight(difficulty);
+        }
+    }
+
+    private double gradeWeight(int currentGrade, int targetGrade) {
+        if (currentGrade >= ClassEntry.MIN_GRADE && targetGrade >= ClassEntry.MIN_GRADE) {
+            int gap = targetGrade - currentGrade;
+            if (gap > 0) {
+                return Math.min(gap, maxGradeGap) * gradeGap;
+            }
+            return maintainGrade;
+        }
+        if (currentGrade != ClassEntry.NO_GRADE || targetGrade != ClassEntry.NO_GRADE) {
+            return maintainGrade;
+        }
+        return unknownGrade;
+    }
+
+    private double difficultyWeight(ClassEntry.Difficulty difficulty) {
+        switch (difficulty) {
+            case VERY_HARD:
+                return veryHard;
+            case HARD:
+                return hard;
+            case AVERAGE:
+                return average;
+            case EASY:
+                return easy;
+            default:
+                return otherDifficulty;
+        }
+    }
+
+    private static double number(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+                throw new NumberFormatException();
+            }
+            return parsed;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(key + " must be a number: " + value);
+        }
+    }
+
+    private static int wholeNumber(Properties properties, String key, int defaultValue) {
+        double parsed = number(properties, key, defaultValue);
+        if (parsed != Math.rint(parsed) || Math.abs(parsed) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(key + " must be a whole number: " + properties.getProperty(key));
+        }
+        return (int) parsed;
+    }
+
+    private static FileTime modifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+}